@@ -16,17 +16,29 @@
 package io.github.andrewdolge.artifactgenerator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import io.github.andrewdolge.artifactgenerator.components.IArtifactComponentFactory;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IRandomSource;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources;
+import io.github.andrewdolge.artifactgenerator.components.filters.ConditionalDescriptorFilter;
 import io.github.andrewdolge.artifactgenerator.components.filters.IConditonalFilter;
 
 /**
@@ -38,75 +50,105 @@ import io.github.andrewdolge.artifactgenerator.components.filters.IConditonalFil
  */
 public class Artifact {
 
-    private Map<String, Description> categoryToDescription;
-    private Consumer<Artifact> consumer;
+    // marks a step that made no description, and a step that was skipped
+    private static final int NULL_STEP = Integer.MIN_VALUE;
+    private static final int SKIPPED_STEP = Integer.MIN_VALUE + 1;
 
-    /**
-     * creates a new Artifact from the given builder object
-     * 
-     * @param builder
-     */
-    private Artifact(ArtifactBuilder builder) {
+    // the code of a string that is neither in the dictionary nor an extra
+    private static final int NO_CODE = Integer.MAX_VALUE;
 
-        this.consumer = builder.getConsumer();
-        this.categoryToDescription = new HashMap<String, Description>();
-
-        for (IArtifactDescriptor descriptor : builder.getIndependentDescriptors()) {
-
-            // Ask each descriptor for a Description object, and add it to the mapping
-            Description toAdd = descriptor.getDescription();
-            addDescription(toAdd);
+    private Consumer<Artifact> consumer;
 
-        } // for every independentDescriptor
+    // the template this artifact was built from. Its dictionary decodes the
+    // descriptions, and its descriptors reroll them.
+    private final ArtifactTemplate template;
 
-        // set remaining dependent descriptors to 0 to allow the while loop to start
-        int remainingDependentDescriptors = 0;
-        // copy the dependent descriptors
-        List<IArtifactDescriptor> dependentDescriptors = new ArrayList<IArtifactDescriptor>();
-        dependentDescriptors.addAll(builder.getDependentDescriptors());
+    // the unfiltered description made by each step of the template's execution
+    // plan, encoded as codes: a step is NULL_STEP, SKIPPED_STEP, or the code of
+    // its category, the number of parts, and the code of each part. A code is an
+    // ordinal of the template's dictionary, or if it is negative, -(i + 1) for
+    // the i-th string of extras. Kept so categories can be rerolled.
+    private final int[] steps;
 
-        // while there are some dependent descriptors are left,
-        // and the size HAS changed (meaning that the category could have been added by
-        // another dependent descriptor that has since been removed)
-        while (!dependentDescriptors.isEmpty() && remainingDependentDescriptors != dependentDescriptors.size()) {
+    // the codes of the categories left once the filters were applied, in order
+    private final int[] categories;
 
-            // update the remaining dependent descriptors
-            // this should reflect the number of remaining descriptors
-            remainingDependentDescriptors = dependentDescriptors.size();
+    // the strings of this artifact that are not in the template's dictionary, or
+    // null if there are none.
+    private final String[] extras;
 
-            Iterator<IArtifactDescriptor> iter = dependentDescriptors.iterator();
-            while (iter.hasNext()) {
-                IArtifactDescriptor currentDescriptor = iter.next();
+    // the seed this artifact can be built again from, if there is one.
+    private final OptionalLong seed;
 
-                // if all dependencies exist in the hashmap
-                if (currentDescriptor.getDependentCategories().stream()
-                        .allMatch(desc -> categoryToDescription.containsKey(desc))) {
+    // the descriptions of an artifact that is still being built, which the
+    // conditions of the filters see. null for built artifacts.
+    private final Map<String, Description> draft;
 
-                    // get all dependent descriptions that the Descriptor needs from the hashmap
-                    // using the categories (from the descriptor) as the key
-                    List<Description> dependentDescriptions = currentDescriptor.getDependentCategories().stream()
-                            .map(category -> categoryToDescription.get(category)).collect(Collectors.toList());
+    /**
+     * creates a new Artifact from the descriptions made by the template's
+     * descriptors.
+     * 
+     * The descriptions are merged by category and filtered, and then stored as
+     * ordinals of the template's dictionary, so the artifact keeps no strings or
+     * descriptions of its own. Descriptions are made again when they are asked
+     * for.
+     * 
+     * @param template         the template the descriptions were made from
+     * @param stepDescriptions the description made by each descriptor of the
+     *                         template's execution plan, in plan order. Entries
+     *                         are null for descriptors that did not run.
+     * @param consumer         the consumer used by {@link #output()}
+     * @param seed             the seed the descriptions were made from, or empty
+     *                         if they were not made from a single seed.
+     */
+    Artifact(ArtifactTemplate template, Description[] stepDescriptions, Consumer<Artifact> consumer,
+            OptionalLong seed) {
 
-                    // add the new description to the Artifact's HashMap
-                    this.addDescription(currentDescriptor.getDescription(dependentDescriptions));
+        this.template = template;
+        this.consumer = consumer;
+        this.seed = seed;
+        this.draft = null;
 
-                    // remove the dependent descriptor from the list, it no longer needs to be added
-                    iter.remove();
-                    // update the remaining number of dependent descriptors
-                    remainingDependentDescriptors = dependentDescriptors.size();
+        Map<String, Description> categoryToDescription = new LinkedHashMap<String, Description>();
+        for (Description description : stepDescriptions) {
+            addDescription(categoryToDescription, description);
+        }
 
-                } // if
-            } // while iter has next
-        } // while
+        // after the descriptions have been set, apply the filters that the
+        // categories of the artifact may trigger. The conditions check a draft of
+        // the artifact, since this one is not encoded yet.
+        FilterDispatch dispatch = template.getFilterDispatch();
+        if (!dispatch.isEmpty()) {
+            Artifact draft = new Artifact(categoryToDescription);
+            BitSet candidates = dispatch.candidates(categoryToDescription.keySet());
+            for (int f = candidates.nextSetBit(0); f >= 0; f = candidates.nextSetBit(f + 1)) {
+                IConditonalFilter filter = template.getFilters().get(f);
+                if (filter.getCondition().test(draft)) {
+                    applyFilter(categoryToDescription, filter.getFilter());
+                }
+            }
+        } // if there are filters
 
-        // after the descriptions have been set, apply the filters.
-        // builder.getConditionToFilter().forEach((condition, filter) ->
-        // applyConditionalFilter(condition, filter));
+        Encoder encoder = new Encoder(template.getDictionary());
+        this.steps = encoder.encodeSteps(stepDescriptions);
+        this.categories = categoryToDescription.keySet().stream().mapToInt(encoder::encode).toArray();
+        this.extras = encoder.getExtras();
 
-        for (Predicate<Artifact> condition : builder.getConditionToFilter().keySet()) {
-            this.applyConditionalFilter(condition, builder.getConditionToFilter().get(condition));
-        }
+    }// constructor
 
+    /**
+     * creates a draft of an artifact that is still being built, for the conditions
+     * of the filters to check.
+     * 
+     * @param draft the descriptions of the artifact so far, by category
+     */
+    private Artifact(Map<String, Description> draft) {
+        this.template = null;
+        this.steps = null;
+        this.categories = null;
+        this.extras = null;
+        this.seed = OptionalLong.empty();
+        this.draft = draft;
     }// constructor
 
     /**
@@ -116,8 +158,15 @@ public class Artifact {
      * @return a list of strings of the categories.
      */
     public List<String> getCategories() {
+        if (draft != null) {
+            return List.copyOf(draft.keySet());
+        }
 
-        return List.copyOf(categoryToDescription.keySet());
+        String[] names = new String[categories.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = decode(categories[i]);
+        }
+        return List.of(names);
 
     }// getDescriptors
 
@@ -130,21 +179,104 @@ public class Artifact {
      *         description with an empty list if there is none.
      */
     public Description getDescription(String category) {
+        if (draft != null) {
+            // NOTE: relies on Description constructor with default empty list
+            return draft.getOrDefault(category, new Description(category));
+        }
 
+        int code = codeOf(category);
+        for (int present : categories) {
+            if (present == code) {
+                return decodeCategory(code);
+            }
+        }
         // NOTE: relies on Description constructor with default empty list
-        return categoryToDescription.getOrDefault(category, new Description(category));
+        return new Description(category);
 
     }// getDescriptions
 
+    /**
+     * determines whether this artifact has a description of the given category,
+     * without making any descriptions.
+     * 
+     * @param category the category to check for
+     * @return true, if the artifact has a description of the category. false
+     *         otherwise.
+     */
+    public boolean hasCategory(String category) {
+        if (draft != null) {
+            return draft.containsKey(category);
+        }
+
+        int code = codeOf(category);
+        for (int present : categories) {
+            if (present == code) {
+                return true;
+            }
+        }
+        return false;
+    }// hasCategory
+
     /**
      * returns an immutable list of descriptions of the artifact.
      * 
      * @return a list of descriptions of the artifact
      */
     public List<Description> getAllDescriptions() {
-        return List.copyOf(categoryToDescription.values());
+        if (draft != null) {
+            return List.copyOf(draft.values());
+        }
+
+        Description[] descriptions = new Description[categories.length];
+        for (int i = 0; i < descriptions.length; i++) {
+            descriptions[i] = decodeCategory(categories[i]);
+        }
+        return List.of(descriptions);
     }
 
+    /**
+     * Creates a new artifact in which the given category, and every category that
+     * depends on it (directly or through other categories), is generated again.
+     * All other descriptions are reused unchanged, and the filters are applied
+     * again. This artifact is not changed.
+     * 
+     * @param category the category to reroll
+     * @return a new artifact with the category and its dependents rerolled.
+     * @throws IllegalArgumentException if no descriptor of this artifact's template
+     *                                  provides the category.
+     */
+    public Artifact reroll(String category) {
+        if (category == null) {
+            throw new IllegalArgumentException("Artifact.reroll: category is null");
+        }
+
+        boolean[] affected = template.getRerolledSteps(category);
+        if (affected == null) {
+            throw new IllegalArgumentException(
+                    String.format("Artifact.reroll: no descriptor provides the category '%s'", category));
+        }
+
+        Description[] rerolled = decodeSteps();
+        template.evaluateSteps(rerolled, affected);
+
+        return new Artifact(template, rerolled, consumer, OptionalLong.empty());
+    }// reroll
+
+    /**
+     * returns the seed this artifact was built from. Building from the same
+     * template with this seed, with {@link ArtifactTemplate#build(long)}, makes
+     * an artifact with exactly the same descriptions.
+     * 
+     * A rerolled artifact has no seed, since its descriptions were made from more
+     * than one seed, and neither does an artifact built with quota categories.
+     * 
+     * @return the seed, or empty if the artifact cannot be built again from a
+     *         seed.
+     */
+    public OptionalLong getSeed() {
+        return seed;
+    }// getSeed
+
     /**
      * Calls the given Artifact consumer, passing this as an argument to accept();
      * Useful for outputting an artifact with various methods.
@@ -170,7 +302,7 @@ public class Artifact {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((categoryToDescription == null) ? 0 : categoryToDescription.hashCode());
+        result = prime * result + toMap().hashCode();
         return result;
     }
 
@@ -183,48 +315,188 @@ public class Artifact {
         if (getClass() != obj.getClass())
             return false;
         Artifact other = (Artifact) obj;
-        if (categoryToDescription == null) {
-            if (other.categoryToDescription != null)
-                return false;
-        } else if (!categoryToDescription.equals(other.categoryToDescription))
-            return false;
-        return true;
+        return toMap().equals(other.toMap());
     }
 
     /**
-     * overloaded helper method that adds the description, with appending
-     * descriptions as a default. see {@link #addDescription(Description, boolean)}.
-     * 
-     * @param toAdd the description to add
+     * returns the descriptions of this artifact by category, for comparing
+     * artifacts.
      */
-    private void addDescription(Description toAdd) {
-        addDescription(toAdd, true);
-    }
+    private Map<String, Description> toMap() {
+        Map<String, Description> map = new HashMap<String, Description>();
+        for (Description description : getAllDescriptions()) {
+            map.put(description.getCategory(), description);
+        }
+        return map;
+    }// toMap
+
+    /**
+     * returns the code of the given string, or NO_CODE if this artifact does not
+     * have the string.
+     */
+    private int codeOf(String string) {
+        int ordinal = template.getDictionary().ordinal(string);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        if (extras != null) {
+            for (int i = 0; i < extras.length; i++) {
+                if (extras[i].equals(string)) {
+                    return -i - 1;
+                }
+            }
+        }
+        return NO_CODE;
+    }// codeOf
+
+    /**
+     * returns the string with the given code.
+     */
+    private String decode(int code) {
+        return code >= 0 ? template.getDictionary().get(code) : extras[-code - 1];
+    }// decode
+
+    /**
+     * makes the description of the category with the given code, from the steps
+     * that made descriptions of it. Later steps' parts come first, as they did
+     * when the descriptions were merged.
+     */
+    private Description decodeCategory(int categoryCode) {
+        int total = 0;
+        for (int i = 0; i < steps.length; i = nextStep(i)) {
+            if (steps[i] == categoryCode) {
+                total += steps[i + 1];
+            }
+        }
+
+        // each step's parts go in front of the parts of the steps before it
+        String[] parts = new String[total];
+        int position = total;
+        for (int i = 0; i < steps.length; i = nextStep(i)) {
+            if (steps[i] == categoryCode) {
+                int count = steps[i + 1];
+                position -= count;
+                for (int p = 0; p < count; p++) {
+                    parts[position + p] = decode(steps[i + 2 + p]);
+                }
+            }
+        }
+        return Description.of(decode(categoryCode), parts);
+    }// decodeCategory
+
+    /**
+     * makes the unfiltered description of every step again.
+     */
+    private Description[] decodeSteps() {
+        List<Description> descriptions = new ArrayList<Description>();
+        for (int i = 0; i < steps.length; i = nextStep(i)) {
+            if (steps[i] == NULL_STEP) {
+                descriptions.add(null);
+            } else if (steps[i] == SKIPPED_STEP) {
+                descriptions.add(ArtifactTemplate.SKIPPED);
+            } else {
+                String[] parts = new String[steps[i + 1]];
+                for (int p = 0; p < parts.length; p++) {
+                    parts[p] = decode(steps[i + 2 + p]);
+                }
+                descriptions.add(Description.of(decode(steps[i]), parts));
+            }
+        } // for every step
+        return descriptions.toArray(new Description[descriptions.size()]);
+    }// decodeSteps
+
+    /**
+     * returns the position of the step after the step at the given position.
+     */
+    private int nextStep(int position) {
+        if (steps[position] == NULL_STEP || steps[position] == SKIPPED_STEP) {
+            return position + 1;
+        }
+        return position + 2 + steps[position + 1];
+    }// nextStep
+
+    /**
+     * Encodes the strings of one artifact with the template's dictionary, keeping
+     * the strings that are not in the dictionary as extras.
+     */
+    private static final class Encoder {
+
+        private final ArtifactDictionary dictionary;
+        private List<String> extras;
+
+        private Encoder(ArtifactDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        private int encode(String string) {
+            int ordinal = dictionary.ordinal(string);
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+
+            if (extras == null) {
+                extras = new ArrayList<String>();
+            }
+            int extra = extras.indexOf(string);
+            if (extra < 0) {
+                extra = extras.size();
+                extras.add(string);
+            }
+            return -extra - 1;
+        }
+
+        private int[] encodeSteps(Description[] stepDescriptions) {
+            int length = 0;
+            for (Description description : stepDescriptions) {
+                length += description == null || description == ArtifactTemplate.SKIPPED ? 1
+                        : 2 + description.size();
+            }
+
+            int[] codes = new int[length];
+            int position = 0;
+            for (Description description : stepDescriptions) {
+                if (description == null) {
+                    codes[position++] = NULL_STEP;
+                } else if (description == ArtifactTemplate.SKIPPED) {
+                    codes[position++] = SKIPPED_STEP;
+                } else {
+                    codes[position++] = encode(description.getCategory());
+                    codes[position++] = description.size();
+                    for (int p = 0; p < description.size(); p++) {
+                        codes[position++] = encode(description.getPart(p));
+                    }
+                }
+            } // for every step
+            return codes;
+        }
+
+        private String[] getExtras() {
+            return extras != null ? extras.toArray(new String[extras.size()]) : null;
+        }
+    }// inner class
 
     /**
-     * private helper method that adds the description to the artifact.
+     * helper method that adds the description to the descriptions of an
+     * artifact, appending it to the description of the same category if there is
+     * one.
      * 
-     * @param toAdd  the description to add
-     * @param append whether or not to append descriptions together if they share
-     *               the same category.
+     * @param categoryToDescription the descriptions of the artifact, by category
+     * @param toAdd                 the description to add
      */
-    private void addDescription(Description toAdd, boolean append) {
+    private static void addDescription(Map<String, Description> categoryToDescription, Description toAdd) {
 
         // if toAdd and it's fields are not null, and it has some description parts, add
         // it to the artifact
-        if (toAdd != null && toAdd.getParts() != null && toAdd.getCategory() != null && !toAdd.getParts().isEmpty()) {
+        if (toAdd != null && toAdd.getCategory() != null && !toAdd.isEmpty()) {
 
             String targetCategory = toAdd.getCategory();
 
-            // if we are appending descriptions, and the category has already been set
-            if (append && this.categoryToDescription.get(targetCategory) != null) {
-
-                // concatenate the existing description parts with the ones to add
-                List<String> concatenated = new LinkedList<String>(toAdd.getParts());
-                concatenated.addAll(this.categoryToDescription.get(targetCategory).getParts());
+            // if the category has already been set
+            if (categoryToDescription.get(targetCategory) != null) {
 
-                // add the combined descriptions together
-                categoryToDescription.put(toAdd.getCategory(), new Description(targetCategory, concatenated));
+                // concatenate the parts to add with the existing description parts
+                categoryToDescription.put(toAdd.getCategory(), Description.concat(targetCategory, toAdd,
+                        categoryToDescription.get(targetCategory)));
 
             } else {
                 // add the new description
@@ -235,16 +507,17 @@ public class Artifact {
     }
 
     /**
-     * Applies the given filter to the artifact.
+     * Applies the given filter to the descriptions of an artifact.
      * 
-     * @param filter the filter to be applied to each description.
+     * @param categoryToDescription the descriptions of the artifact, by category
+     * @param filter                the filter to be applied to each description.
      */
-    private void applyFilter(Predicate<Description> filter) {
+    private static void applyFilter(Map<String, Description> categoryToDescription, Predicate<Description> filter) {
 
         // we use an iterator because that allows us to remove keys and entries from the
         // map safely.
         // iterate over each key in the hashmap
-        Iterator<String> iter = this.categoryToDescription.keySet().iterator();
+        Iterator<String> iter = categoryToDescription.keySet().iterator();
 
         while (iter.hasNext()) {
             // if the description does not pass the test, remove it.
@@ -254,21 +527,9 @@ public class Artifact {
                 iter.remove();
             } // if
         } // while
-        /*
-         * old implementation. Only removed the values from the list
-         * this.categoryToDescription.replaceAll( (category, description) ->{
-         * 
-         * if(filter.test(description)){ return description; }else{ return null; } } );
-         */
 
     }// applyFilter
 
-    private void applyConditionalFilter(Predicate<Artifact> condition, Predicate<Description> filter) {
-        if (condition.test(this)) {
-            applyFilter(filter);
-        }
-    }
-
     /**
      * Inner static builder class for Artifacts.
      * 
@@ -281,7 +542,17 @@ public class Artifact {
         private List<IArtifactDescriptor> independentDescriptors;
         private List<IArtifactDescriptor> dependentDescriptors;
         private Consumer<Artifact> consumer;
-        private HashMap<Predicate<Artifact>, Predicate<Description>> conditionToFilter;
+        private LinkedHashMap<Predicate<Artifact>, Predicate<Description>> conditionToFilter;
+        private Set<String> projection;
+        private IRandomSource randomSource;
+        private Set<String> quota;
+
+        // where each descriptor came from, for reporting problems
+        private Map<IArtifactDescriptor, String> descriptorSources;
+
+        // the compiled template, created lazily and cleared whenever the builder
+        // changes.
+        private ArtifactTemplate template;
 
         /**
          * Creates a new ArtifactBuilder. Empty Constructor.
@@ -290,8 +561,11 @@ public class Artifact {
             independentDescriptors = new LinkedList<IArtifactDescriptor>();
             dependentDescriptors = new LinkedList<IArtifactDescriptor>();
 
-            // multimap of conditions to filters
-            conditionToFilter = new HashMap<Predicate<Artifact>, Predicate<Description>>();
+            descriptorSources = new IdentityHashMap<IArtifactDescriptor, String>();
+            randomSource = RandomSources.threadLocal();
+
+            // multimap of conditions to filters, in the order they were added
+            conditionToFilter = new LinkedHashMap<Predicate<Artifact>, Predicate<Description>>();
         }// Constructor
 
         /**
@@ -311,6 +585,9 @@ public class Artifact {
                 independentDescriptors.add(descriptor);
             }
 
+            // the descriptors changed, so the template must be recompiled.
+            template = null;
+
             return this;
         }// withDescriptor
 
@@ -333,6 +610,9 @@ public class Artifact {
             if (descriptors != null) {
                 for (IArtifactDescriptor descriptor : descriptors) {
                     this.withDescriptor(descriptor);
+                    if (factory.getSourceName() != null) {
+                        descriptorSources.put(descriptor, factory.getSourceName());
+                    }
                 }
             } else {
                 throw new IllegalArgumentException(
@@ -354,12 +634,133 @@ public class Artifact {
         /**
          * builds and returns the artifact.
          * 
+         * This is a shortcut for {@code compile().build()}. The builder itself is not
+         * thread safe; compile it and share the template to build artifacts from
+         * several threads.
+         * 
          * @return the created artifact.
          */
         public Artifact build() {
-            return new Artifact(this);
+            return compile().build();
+        }// build
+
+        /**
+         * Compiles this builder, and returns the validated graph of its descriptors.
+         * The graph reports dependent descriptors that can never be evaluated, and
+         * why.
+         * 
+         * This is a shortcut for {@code compile().getDescriptorGraph()}.
+         * 
+         * @return the descriptor graph.
+         * @see DescriptorGraph
+         */
+        public DescriptorGraph validate() {
+            return compile().getDescriptorGraph();
+        }// validate
+
+        /**
+         * builds the artifact with the given seed. The same seed always builds an
+         * artifact with the same descriptions, as long as the builder is the same.
+         * 
+         * This is a shortcut for {@code compile().build(seed)}.
+         * 
+         * @param seed the seed of the artifact
+         * @return the created artifact.
+         * @see ArtifactTemplate#build(long)
+         */
+        public Artifact build(long seed) {
+            return compile().build(seed);
         }// build
 
+        /**
+         * builds the given number of artifacts on the given number of threads.
+         * 
+         * This is a shortcut for {@code compile().buildBatch(n, parallelism)}.
+         * 
+         * @param n           the number of artifacts to build
+         * @param parallelism the number of threads to build with
+         * @return an immutable list of the built artifacts.
+         * @see ArtifactTemplate#buildBatch(int, int)
+         */
+        public List<Artifact> buildBatch(int n, int parallelism) {
+            return compile().buildBatch(n, parallelism);
+        }// buildBatch
+
+        /**
+         * builds the given number of artifacts in columns, evaluating each
+         * descriptor for a block of artifacts at a time.
+         * 
+         * This is a shortcut for {@code compile().buildColumns(n)}.
+         * 
+         * @param n the number of artifacts to build
+         * @return an immutable list of the built artifacts.
+         * @see ArtifactTemplate#buildColumns(int)
+         */
+        public List<Artifact> buildColumns(int n) {
+            return compile().buildColumns(n);
+        }// buildColumns
+
+        /**
+         * asynchronously builds an artifact, evaluating descriptors concurrently.
+         * 
+         * This is a shortcut for {@code compile().buildAsync(executor)}.
+         * 
+         * @param executor the executor to evaluate descriptors on
+         * @return a future that completes with the artifact.
+         * @see ArtifactTemplate#buildAsync(Executor)
+         */
+        public CompletableFuture<Artifact> buildAsync(Executor executor) {
+            return compile().buildAsync(executor);
+        }// buildAsync
+
+        /**
+         * returns a lazy, unbounded stream of artifacts.
+         * 
+         * This is a shortcut for {@code compile().stream()}.
+         * 
+         * @return an unbounded stream of new artifacts.
+         * @see ArtifactTemplate#stream()
+         */
+        public Stream<Artifact> stream() {
+            return compile().stream();
+        }// stream
+
+        /**
+         * returns a lazy stream of exactly n artifacts.
+         * 
+         * This is a shortcut for {@code compile().stream(n)}.
+         * 
+         * @param n the number of artifacts in the stream
+         * @return a stream of n new artifacts.
+         * @see ArtifactTemplate#stream(long)
+         */
+        public Stream<Artifact> stream(long n) {
+            return compile().stream(n);
+        }// stream
+
+        /**
+         * Compiles the descriptors, filters and consumer of this builder into an
+         * immutable {@link ArtifactTemplate}.
+         * 
+         * The template is cached and returned again until this builder is changed.
+         * Later changes to this builder do not affect templates that were already
+         * compiled.
+         * 
+         * @return the compiled template.
+         */
+        public ArtifactTemplate compile() {
+            if (template == null) {
+                List<IConditonalFilter> filters = new ArrayList<IConditonalFilter>(conditionToFilter.size());
+                conditionToFilter.forEach(
+                        (condition, filter) -> filters.add(new ConditionalDescriptorFilter(condition, filter)));
+
+                DescriptorGraph graph = DescriptorGraph.compile(independentDescriptors, dependentDescriptors,
+                        descriptorSources);
+                template = new ArtifactTemplate(graph, filters, consumer, projection, randomSource, quota);
+            }
+            return template;
+        }// compile
+
         /**
          * adds the specified Artifact Consumer to be used with
          * {@link io.github.andrewdolge.artifactgenerator.Artifact#output()}
@@ -372,9 +773,90 @@ public class Artifact {
                 throw new IllegalArgumentException("ArtifactBuilder.withArtifactConsumer: consumer is null");
             }
             this.consumer = consumer;
+            this.template = null;
             return this;
         }// withArtifactConsumer
 
+        /**
+         * Restricts the artifacts to the given categories.
+         * 
+         * Only the descriptors that provide these categories, and the descriptors
+         * they depend on, are evaluated. All other descriptors are skipped entirely.
+         * The categories that were needed as dependencies are still included in the
+         * artifact. Filters are applied to the projected artifact, so a filter whose
+         * condition checks a skipped category will see that category as absent.
+         * 
+         * Calling this method with no categories removes the projection.
+         * 
+         * @param categories the categories the built artifacts need
+         * @return this, for method chaining.
+         */
+        public ArtifactBuilder withProjection(String... categories) {
+            if (categories == null) {
+                throw new IllegalArgumentException("ArtifactBuilder.withProjection: categories is null");
+            }
+
+            this.projection = categories.length > 0 ? new LinkedHashSet<String>(Arrays.asList(categories)) : null;
+            this.template = null;
+            return this;
+        }// withProjection
+
+        /**
+         * Sets the random source of the built artifacts. The seed of each artifact
+         * is drawn from the source, and the artifact's descriptors draw from a new
+         * source of the same kind, seeded with that seed. Each thread that builds
+         * artifacts draws seeds from its own split of the source.
+         * 
+         * By default, {@link RandomSources#threadLocal()} is used, and artifacts
+         * are built with splittable sources. Use a seeded source, such as
+         * {@link RandomSources#splittable(long)}, to get the same artifacts every
+         * time they are built on one thread.
+         * 
+         * @param randomSource the random source
+         * @return this, for method chaining.
+         */
+        public ArtifactBuilder withRandomSource(IRandomSource randomSource) {
+            if (randomSource == null) {
+                throw new IllegalArgumentException("ArtifactBuilder.withRandomSource: randomSource is null");
+            }
+            this.randomSource = randomSource;
+            this.template = null;
+            return this;
+        }// withRandomSource
+
+        /**
+         * Balances the selections of the given categories across the built
+         * artifacts.
+         * 
+         * The random positions a quota category selects from its data are dealt from
+         * shuffled decks rather than drawn independently, so over n artifacts built
+         * from the same template, each value is selected either floor(n / size) or
+         * ceil(n / size) times, rather than only on average. A dependent category
+         * has a deck for each combination of the descriptions it depends on, so each
+         * bucket of its dependent data is balanced on its own. No artifact is
+         * rejected to reach the quota.
+         * 
+         * Weighted selections stay weighted, and selections of several values are
+         * balanced as closely as their counts allow. Since each artifact depends on
+         * the artifacts built before it, artifacts built with quota categories have
+         * no seed to be built again from. Rerolled categories are drawn at random,
+         * and do not count toward the quota.
+         * 
+         * Calling this method with no categories removes the quota.
+         * 
+         * @param categories the categories to balance
+         * @return this, for method chaining.
+         */
+        public ArtifactBuilder withQuota(String... categories) {
+            if (categories == null) {
+                throw new IllegalArgumentException("ArtifactBuilder.withQuota: categories is null");
+            }
+
+            this.quota = categories.length > 0 ? new LinkedHashSet<String>(Arrays.asList(categories)) : null;
+            this.template = null;
+            return this;
+        }// withQuota
+
         /**
          * Adds a filter to the builder.
          * 
@@ -405,45 +887,10 @@ public class Artifact {
                 this.conditionToFilter.put(condition, filter);
             }
 
+            this.template = null;
             return this;
         }// withFilter
 
-        /**
-         * private getter method for the consumer
-         * 
-         * @return
-         */
-        private Consumer<Artifact> getConsumer() {
-            return this.consumer;
-        }
-
-        /**
-         * internal getter method for the list of Independent ArtifactDescriptors
-         * 
-         * @return
-         */
-        private List<IArtifactDescriptor> getIndependentDescriptors() {
-            return this.independentDescriptors;
-        }
-
-        /**
-         * internal getter method for the list of dependent ArtifactDescriptors
-         * 
-         * @return the list of dependent descriptors
-         */
-        private List<IArtifactDescriptor> getDependentDescriptors() {
-            return this.dependentDescriptors;
-        }
-
-        /**
-         * internal getter method for the conditional filters
-         * 
-         * @return the mapping of conditions to filters
-         */
-        private HashMap<Predicate<Artifact>, Predicate<Description>> getConditionToFilter() {
-            return conditionToFilter;
-        }
-
     }// inner static builder class
 
 }// class
\ No newline at end of file
@@ -36,20 +36,22 @@ public final class ArtifactConsumer {
      * Artifact consumer implementation that prints the Descriptions of the Artifact
      * to the console. Functionally equivalent to a toString() method.
      * 
+     * Safe to use from several threads; each artifact is printed in one piece.
+     * 
      * @return
      */
     public static Consumer<Artifact> PrintToConsole() {
 
         return artifact -> {
-            System.out.println();
+            // print the whole artifact at once, so that artifacts built on different
+            // threads are not interleaved.
+            StringBuilder builder = new StringBuilder(System.lineSeparator());
             for (Description d : artifact.getAllDescriptions()) {
-                System.out.println("--------");
-                System.out.println(d.getCategory());
-                for (String part : d.getParts()) {
-
-                    System.out.println("  " + part);
-                }
+                builder.append("--------").append(System.lineSeparator());
+                builder.append(d.getCategory()).append(System.lineSeparator());
+                d.forEachPart(part -> builder.append("  ").append(part).append(System.lineSeparator()));
             }
+            System.out.print(builder);
         };
 
     }// ArtifactPrintConsumer
@@ -57,6 +59,10 @@ public final class ArtifactConsumer {
     /**
      * Writes out artifacts to a markdown file.
      * 
+     * The files are written one at a time, so the consumer can be shared by
+     * threads building artifacts in parallel. Artifacts with the same name still
+     * overwrite each other's file, in the order they are written.
+     * 
      * @param directory    the root directory to store artifact files.
      * @param nameCategory the category of the artifact that should be used as a
      *                     name.
@@ -77,33 +83,42 @@ public final class ArtifactConsumer {
                     String.format("WriteToMarkdown: parameter directory is not a directory! path: %s", directory));
         }
 
+        // artifacts with the same name, built on several threads, would otherwise
+        // write the same file at once
+        Object lock = new Object();
+
         return artifact -> {
             String artifactName;
+            Description name = artifact.getDescription(nameCategory);
 
-            if (!artifact.getDescription(nameCategory).isEmpty()) {
-                artifactName = artifact.getDescription(nameCategory).getParts().get(0);
+            if (!name.isEmpty()) {
+                artifactName = name.getPart(0);
             } else {
                 artifactName = String.valueOf(artifact.hashCode());
             } // else
 
-            try (Writer writer = new BufferedWriter(new FileWriter(new File(directory, artifactName + ".md")))) {
-
-                writer.append("# " + artifactName + "\n");
+            // format the artifact before taking the lock, so only the writes wait
+            StringBuilder markdown = new StringBuilder();
+            markdown.append("# ").append(artifactName).append('\n');
 
-                for (Description d : artifact.getAllDescriptions()) {
-                    writer.append("---\n");
-
-                    writer.append("## " + d.getCategory() + "\n");
-                    for (String s : d.getParts()) {
-                        writer.append("    - " + s + "\n");
-                    } // for parts
-                } // for description
-
-            } catch (IOException e) {
-                // TODO: handle exception
-                e.printStackTrace();
-
-            } // catch
+            for (Description d : artifact.getAllDescriptions()) {
+                markdown.append("---\n");
+
+                markdown.append("## ").append(d.getCategory()).append('\n');
+                for (String s : d.getParts()) {
+                    markdown.append("    - ").append(s).append('\n');
+                } // for parts
+            } // for description
+
+            synchronized (lock) {
+                try (Writer writer = new BufferedWriter(new FileWriter(new File(directory, artifactName + ".md")))) {
+                    writer.append(markdown);
+                } catch (IOException e) {
+                    // TODO: handle exception
+                    e.printStackTrace();
+
+                } // catch
+            } // synchronized
         };// lambda
     }// WriteToMarkdown
 
@@ -0,0 +1,99 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+
+/**
+ * The ordinals of the strings that the artifacts of a template are made of.
+ * 
+ * Every category of the template, and every part its descriptors report with
+ * {@link IArtifactDescriptor#getPossibleParts()}, has an ordinal, so an
+ * artifact can store its descriptions as ordinals and share the strings with
+ * every other artifact of the template. The dictionary is immutable, so it is
+ * shared between threads without locking.
+ */
+final class ArtifactDictionary {
+
+    private final Map<String, Integer> ordinals;
+    private final String[] strings;
+
+    /**
+     * assigns ordinals to the categories and possible parts of the descriptors of
+     * the plan: first the categories, then the parts, in plan order.
+     * 
+     * @param plan the execution plan of the template
+     */
+    ArtifactDictionary(List<IArtifactDescriptor> plan) {
+        Map<String, Integer> ordinals = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+
+        for (IArtifactDescriptor descriptor : plan) {
+            add(descriptor.getCategory(), ordinals, strings);
+        }
+        for (IArtifactDescriptor descriptor : plan) {
+            for (String part : descriptor.getPossibleParts()) {
+                add(part, ordinals, strings);
+            }
+        }
+
+        this.ordinals = ordinals;
+        this.strings = strings.toArray(new String[strings.size()]);
+    }// constructor
+
+    private static void add(String string, Map<String, Integer> ordinals, List<String> strings) {
+        if (string != null && !ordinals.containsKey(string)) {
+            ordinals.put(string, strings.size());
+            strings.add(string);
+        }
+    }// add
+
+    /**
+     * returns the ordinal of the string.
+     * 
+     * @param string the string to look up
+     * @return the ordinal, or -1 if the string is not in the dictionary.
+     */
+    int ordinal(String string) {
+        Integer ordinal = ordinals.get(string);
+        return ordinal != null ? ordinal : -1;
+    }// ordinal
+
+    /**
+     * returns the string with the given ordinal.
+     * 
+     * @param ordinal the ordinal of the string
+     * @return the string.
+     */
+    String get(int ordinal) {
+        return strings[ordinal];
+    }// get
+
+    /**
+     * returns the number of strings in the dictionary.
+     * 
+     * @return the number of strings.
+     */
+    int size() {
+        return strings.length;
+    }// size
+
+}// class
@@ -0,0 +1,213 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link java.util.concurrent.Flow.Publisher} of artifacts built from an
+ * ArtifactTemplate.
+ * 
+ * Artifacts are only built when a subscriber requests them, so a slow
+ * subscriber (for example one that writes markdown files, or forwards
+ * artifacts over a network) slows down generation instead of letting
+ * artifacts pile up in memory.
+ * 
+ * Every subscriber gets its own subscription with its own count of artifacts.
+ * Artifacts are built and delivered on the given executor, one subscription
+ * at a time, so a subscriber never receives two signals at once.
+ * 
+ */
+public class ArtifactPublisher implements Flow.Publisher<Artifact> {
+
+    private final ArtifactTemplate template;
+    private final long count;
+    private final Executor executor;
+
+    /**
+     * Creates a publisher that gives every subscriber an unbounded number of
+     * artifacts, until it cancels its subscription.
+     * 
+     * @param template the template to build artifacts from
+     * @param executor the executor that artifacts are built and delivered on
+     */
+    public ArtifactPublisher(ArtifactTemplate template, Executor executor) {
+        this(template, Long.MAX_VALUE, executor);
+    }// constructor
+
+    /**
+     * Creates a publisher that gives every subscriber exactly count artifacts,
+     * followed by onComplete.
+     * 
+     * @param template the template to build artifacts from
+     * @param count    the number of artifacts each subscriber receives.
+     *                 {@code Long.MAX_VALUE} means unbounded.
+     * @param executor the executor that artifacts are built and delivered on
+     * @throws IllegalArgumentException if the template or executor is null, or
+     *                                  the count is negative.
+     */
+    public ArtifactPublisher(ArtifactTemplate template, long count, Executor executor) {
+        if (template == null) {
+            throw new IllegalArgumentException("ArtifactPublisher.Constructor: template is null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("ArtifactPublisher.Constructor: executor is null");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    String.format("ArtifactPublisher.Constructor: count(%d) must be nonnegative", count));
+        }
+        this.template = template;
+        this.count = count;
+        this.executor = executor;
+    }// constructor
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Artifact> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("ArtifactPublisher.subscribe: subscriber is null");
+        }
+        ArtifactSubscription subscription = new ArtifactSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        // an empty publisher completes without waiting for a request
+        if (count == 0) {
+            subscription.drain();
+        }
+    }// subscribe
+
+    /**
+     * A subscription that builds artifacts as they are requested.
+     * 
+     * Requests and cancellations may come from any thread. They only update the
+     * demand, and schedule a drain on the executor. The drain loop is the only
+     * place that signals the subscriber, and at most one drain runs at a time.
+     */
+    private class ArtifactSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Artifact> subscriber;
+
+        // the number of artifacts requested, but not yet delivered
+        private final AtomicLong demand = new AtomicLong();
+        // the number of drains that have been asked for; only the first one runs
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        // set once the subscriber requests fewer than one artifact. The request is
+        // written before the flag, so it is visible once the flag is.
+        private volatile boolean invalid;
+        private volatile long invalidRequest;
+
+        // only touched by the drain loop
+        private long remaining = count;
+        private boolean done;
+
+        private ArtifactSubscription(Flow.Subscriber<? super Artifact> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // the subscriber broke the protocol, signal an error from the drain loop
+                invalidRequest = n;
+                invalid = true;
+            } else {
+                // add to the demand, capping it at Long.MAX_VALUE
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }// request
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }// cancel
+
+        /**
+         * schedules the drain loop on the executor, unless it is already running.
+         */
+        private void drain() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drainLoop);
+                } catch (RuntimeException e) {
+                    // the executor refused to run us, so nothing will ever be delivered
+                    cancelled = true;
+                    subscriber.onError(e);
+                }
+            }
+        }// drain
+
+        /**
+         * builds and delivers artifacts while there is demand for them.
+         */
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    deliver();
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }// drainLoop
+
+        /**
+         * delivers as many artifacts as the subscriber has asked for, then completes
+         * the subscriber if every artifact has been delivered.
+         */
+        private void deliver() {
+            try {
+                while (!cancelled && remaining > 0 && !invalid && demand.get() > 0) {
+                    Artifact artifact = template.build();
+
+                    // an unbounded publisher never runs out of artifacts
+                    if (remaining != Long.MAX_VALUE) {
+                        remaining--;
+                    }
+                    // a demand of Long.MAX_VALUE is treated as unbounded
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(artifact);
+                } // while there is demand
+
+                if (cancelled) {
+                    done = true;
+                } else if (invalid) {
+                    done = true;
+                    cancelled = true;
+                    subscriber.onError(new IllegalArgumentException(String.format(
+                            "ArtifactPublisher.request: n(%d) must be positive", invalidRequest)));
+                } else if (remaining == 0) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+
+            } catch (RuntimeException e) {
+                // building failed, or the subscriber threw. Either way we stop.
+                done = true;
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }// deliver
+
+    }// inner subscription class
+
+}// class
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A Spliterator that lazily builds artifacts from an ArtifactTemplate.
+ * 
+ * Each artifact is only built when it is requested by the stream. The
+ * spliterator covers a range of positions, and splits that range in half, so
+ * parallel streams can divide the work evenly. A bounded spliterator reports
+ * SIZED and SUBSIZED; an unbounded one covers {@code Long.MAX_VALUE} positions
+ * and reports neither.
+ * 
+ */
+class ArtifactSpliterator implements Spliterator<Artifact> {
+
+    // building an artifact costs far more than a split, so any range that holds
+    // two artifacts is split. The stream decides how small its pieces should be.
+    private static final long MINIMUM_SPLIT_SIZE = 2;
+
+    private final ArtifactTemplate template;
+    private final boolean sized;
+
+    // the current position, and the end (exclusive) of this spliterator's range
+    private long origin;
+    private final long fence;
+
+    /**
+     * Creates a spliterator that builds artifacts for the range [origin, fence).
+     * 
+     * @param template the template to build from
+     * @param origin   the first position (inclusive)
+     * @param fence    the last position (exclusive)
+     * @param sized    whether the range is an exact count of artifacts.
+     */
+    ArtifactSpliterator(ArtifactTemplate template, long origin, long fence, boolean sized) {
+        this.template = template;
+        this.origin = origin;
+        this.fence = fence;
+        this.sized = sized;
+    }// constructor
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Artifact> action) {
+        if (action == null) {
+            throw new NullPointerException("ArtifactSpliterator.tryAdvance: action is null");
+        }
+        if (origin < fence) {
+            origin++;
+            action.accept(template.build());
+            return true;
+        }
+        return false;
+    }// tryAdvance
+
+    @Override
+    public void forEachRemaining(Consumer<? super Artifact> action) {
+        if (action == null) {
+            throw new NullPointerException("ArtifactSpliterator.forEachRemaining: action is null");
+        }
+        long end = fence;
+        long i = origin;
+        // mark everything as consumed first, as the contract requires
+        origin = end;
+        for (; i < end; i++) {
+            action.accept(template.build());
+        }
+    }// forEachRemaining
+
+    @Override
+    public Spliterator<Artifact> trySplit() {
+        long size = fence - origin;
+        if (size < MINIMUM_SPLIT_SIZE) {
+            return null;
+        }
+        // hand the first half to the new spliterator and keep the second half
+        long middle = origin + size / 2;
+        Spliterator<Artifact> prefix = new ArtifactSpliterator(template, origin, middle, sized);
+        origin = middle;
+        return prefix;
+    }// trySplit
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }// estimateSize
+
+    @Override
+    public int characteristics() {
+        int characteristics = Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        if (sized) {
+            characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+        return characteristics;
+    }// characteristics
+
+}// class
@@ -0,0 +1,1145 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IRandomSource;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources;
+import io.github.andrewdolge.artifactgenerator.components.filters.DescriptionFilters;
+import io.github.andrewdolge.artifactgenerator.components.filters.FilterConditions;
+import io.github.andrewdolge.artifactgenerator.components.filters.IConditonalFilter;
+
+/**
+ * An immutable, compiled set of descriptors, filters and a consumer that
+ * Artifacts can be built from.
+ * 
+ * A template is created with
+ * {@link io.github.andrewdolge.artifactgenerator.Artifact.ArtifactBuilder#compile()}.
+ * Unlike the builder, a template never changes after it is created, so any
+ * number of threads can build artifacts from the same template at once without
+ * locking. The descriptors and filters given to the builder must themselves be
+ * safe to call from several threads, which is true of the ones this library
+ * provides.
+ * 
+ * Every artifact is built from a 64 bit seed, which it keeps: building again
+ * with {@link #build(long)} and the same seed gives the same descriptions. The
+ * seeds are drawn from the template's {@link IRandomSource}, and each artifact
+ * draws its random numbers from a new source of the same kind, seeded with its
+ * seed. Each thread that builds artifacts draws seeds from its own split of the
+ * template's source, so threads never contend for a generator.
+ * 
+ */
+public final class ArtifactTemplate {
+
+    private final DescriptorGraph descriptorGraph;
+    private final List<IArtifactDescriptor> executionPlan;
+    private final List<IConditonalFilter> filters;
+    private final Consumer<Artifact> consumer;
+
+    // the source that every thread's source of seeds is split from
+    private final IRandomSource randomSource;
+    private final ThreadLocal<IRandomSource> threadRandom;
+
+    // for each step of the execution plan, the earlier steps whose category it
+    // depends on, or is constrained by.
+    private final int[][] stepParents;
+
+    // for each step, whether its descriptor has constraint categories
+    private final boolean[] constrainedSteps;
+
+    // for each step, whether its descriptor is constant, and if so its description,
+    // which is made once and shared by every artifact.
+    private final boolean[] constantSteps;
+    private final Description[] constants;
+
+    // the filters that can be applied while generating, or null if there are none.
+    private final FilterPushdown pushdown;
+
+    // the decks that quota categories are selected from, or null if there are none.
+    private final QuotaDecks quota;
+
+    // the ordinals that artifacts store their descriptions with
+    private final ArtifactDictionary dictionary;
+
+    // the filters, indexed by the category that triggers them
+    private final FilterDispatch filterDispatch;
+
+    // marks a step that was skipped because a filter would remove its description.
+    static final Description SKIPPED = new Description("");
+
+    // the steps waited on by a step that waits on none
+    private static final int[] NO_STEPS = new int[0];
+
+    // the number of artifacts built together by buildColumns
+    private static final int COLUMN_BLOCK_SIZE = 1024;
+
+    /**
+     * Creates a new template. Only the ArtifactBuilder should create templates.
+     * 
+     * @param descriptorGraph the compiled graph of the descriptors
+     * @param filters         the conditional filters, in the order they should be
+     *                        applied
+     * @param consumer        the consumer of the built artifacts, or null.
+     * @param projection      the only categories the artifacts need, or null for
+     *                        every category.
+     * @param randomSource    the source that descriptors draw random numbers from
+     * @param quota           the categories to select in equal proportions, or
+     *                        null for none.
+     */
+    ArtifactTemplate(DescriptorGraph descriptorGraph, List<IConditonalFilter> filters, Consumer<Artifact> consumer,
+            Set<String> projection, IRandomSource randomSource, Set<String> quota) {
+        List<IArtifactDescriptor> plan = descriptorGraph.getExecutionPlan();
+        if (projection != null) {
+            plan = project(plan, compileStepParents(plan), projection);
+        }
+
+        this.descriptorGraph = descriptorGraph;
+        this.executionPlan = plan;
+        this.filters = List.copyOf(filters);
+        this.consumer = consumer;
+        this.randomSource = randomSource;
+        this.threadRandom = RandomSources.perThread(randomSource);
+        this.stepParents = compileStepParents(this.executionPlan);
+
+        this.constrainedSteps = new boolean[this.executionPlan.size()];
+        for (int i = 0; i < constrainedSteps.length; i++) {
+            constrainedSteps[i] = !this.executionPlan.get(i).getConstraintCategories().isEmpty();
+        }
+
+        // evaluate the descriptors whose descriptions cannot vary once, up front
+        this.constantSteps = new boolean[this.executionPlan.size()];
+        this.constants = new Description[this.executionPlan.size()];
+        for (int i = 0; i < constantSteps.length; i++) {
+            IArtifactDescriptor descriptor = this.executionPlan.get(i);
+            if (!descriptor.isDependent() && !constrainedSteps[i] && descriptor.isConstant()) {
+                constantSteps[i] = true;
+                constants[i] = descriptor.getDescription(RandomSources.threadLocal());
+            }
+        }
+
+        FilterPushdown compiled = new FilterPushdown(this.executionPlan, this.stepParents, this.filters);
+        this.pushdown = compiled.isEmpty() ? null : compiled;
+        this.quota = quota == null || quota.isEmpty() ? null : new QuotaDecks(this.executionPlan, quota);
+        this.dictionary = new ArtifactDictionary(this.executionPlan);
+        this.filterDispatch = new FilterDispatch(this.filters);
+    }// constructor
+
+    /**
+     * builds and returns a new artifact. Safe to call from several threads at
+     * once.
+     * 
+     * @return the created artifact.
+     */
+    public Artifact build() {
+        return build(threadRandom.get().nextLong());
+    }// build
+
+    /**
+     * builds and returns a new artifact, drawing its seed from the given source
+     * instead of the template's. The source is not shared with other threads.
+     * 
+     * @param random the random source to draw the seed from
+     * @return the created artifact.
+     */
+    public Artifact build(IRandomSource random) {
+        if (random == null) {
+            throw new IllegalArgumentException("ArtifactTemplate.build: random is null");
+        }
+        return build(random.nextLong());
+    }// build
+
+    /**
+     * builds and returns the artifact with the given seed. The same seed always
+     * builds an artifact with the same descriptions, as long as the descriptors
+     * of the template are the same.
+     * 
+     * @param seed the seed of the artifact
+     * @return the created artifact.
+     */
+    public Artifact build(long seed) {
+        Description[] steps = new Description[executionPlan.size()];
+        evaluateSteps(steps, null, randomSource.withSeed(seed));
+        return new Artifact(this, steps, consumer, seedOf(seed));
+    }// build
+
+    /**
+     * asynchronously builds a new artifact, evaluating descriptors concurrently.
+     * 
+     * Each descriptor is started through
+     * {@link IArtifactDescriptor#getDescriptionAsync(IRandomSource, Executor)} as
+     * soon as the descriptors it depends on have finished, so descriptors that do
+     * not depend on each other run at the same time. Every descriptor is given its
+     * own split of the artifact's random source, since they may run on different
+     * threads. The artifact is the same as one built by
+     * {@link #build(long)} would be, given the same seed, and like it skips the
+     * descriptors whose descriptions a filter is certain to remove.
+     * 
+     * @param executor the executor to evaluate descriptors on
+     * @return a future that completes with the artifact, or completes
+     *         exceptionally if a descriptor fails.
+     */
+    public CompletableFuture<Artifact> buildAsync(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("ArtifactTemplate.buildAsync: executor is null");
+        }
+
+        // every step is stored before any step that waits on it is created, so the
+        // callbacks only read elements that were written before they were registered
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Description>[] steps = new CompletableFuture[executionPlan.size()];
+        long seed = threadRandom.get().nextLong();
+        IRandomSource random = randomSource.withSeed(seed);
+
+        for (int i = 0; i < steps.length; i++) {
+            IArtifactDescriptor descriptor = executionPlan.get(i);
+            IRandomSource stepRandom = random.split();
+            // the earlier steps whose descriptions can trigger a filter that skips this one
+            int[] skipTriggers = pushdown != null ? pushdown.getSkipTriggers(i) : NO_STEPS;
+            boolean waitsOnParents = !constantSteps[i] && (descriptor.isDependent() || constrainedSteps[i]);
+
+            if (skipTriggers.length == 0 && constantSteps[i]) {
+                steps[i] = CompletableFuture.completedFuture(constants[i]);
+            } else if (skipTriggers.length == 0 && !waitsOnParents) {
+                steps[i] = descriptor.getDescriptionAsync(stratify(i, null, stepRandom), executor)
+                        .toCompletableFuture();
+            } else {
+                int step = i;
+                int[] parents = waitsOnParents ? stepParents[i] : NO_STEPS;
+                CompletableFuture<?>[] waitedSteps = new CompletableFuture<?>[parents.length + skipTriggers.length];
+                for (int p = 0; p < parents.length; p++) {
+                    waitedSteps[p] = steps[parents[p]];
+                }
+                for (int t = 0; t < skipTriggers.length; t++) {
+                    waitedSteps[parents.length + t] = steps[skipTriggers[t]];
+                }
+
+                // once every waited step is done, merge the parents' descriptions and start
+                // this one. A step with constraints waits on its parents even if it is
+                // independent.
+                steps[i] = CompletableFuture.allOf(waitedSteps).thenCompose(ignored -> {
+                    IntFunction<Description> parentDescriptions = parent -> steps[parent].join();
+                    if (isSkippedAsync(step, skipTriggers, parentDescriptions)) {
+                        // a filter is certain to remove this description, so don't make it
+                        return CompletableFuture.completedFuture(SKIPPED);
+                    } else if (constantSteps[step]) {
+                        return CompletableFuture.completedFuture(constants[step]);
+                    } else if (!waitsOnParents) {
+                        return descriptor.getDescriptionAsync(stratify(step, null, stepRandom), executor);
+                    }
+
+                    List<Description> dependents = descriptor.isDependent()
+                            ? mergeDependents(descriptor, parents, parentDescriptions)
+                            : null;
+                    if (descriptor.isDependent() && dependents == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    IRandomSource selectionRandom = stratify(step, dependents, stepRandom);
+                    if (constrainedSteps[step]) {
+                        return CompletableFuture.supplyAsync(
+                                () -> describeConstrained(step, dependents, parentDescriptions, selectionRandom),
+                                executor);
+                    }
+                    return descriptor.getDescriptionAsync(dependents, selectionRandom, executor);
+                });
+            } // else the step waits on other steps
+        } // for every step
+
+        return CompletableFuture.allOf(steps).thenApply(ignored -> {
+            Description[] descriptions = new Description[steps.length];
+            for (int i = 0; i < descriptions.length; i++) {
+                descriptions[i] = steps[i].join();
+            }
+            return new Artifact(this, descriptions, consumer, seedOf(seed));
+        });
+    }// buildAsync
+
+    /**
+     * builds the given number of artifacts, spreading the work evenly over the
+     * given number of threads. Each thread draws from its own split of the random
+     * source.
+     * 
+     * @param n           the number of artifacts to build
+     * @param parallelism the number of threads to build with
+     * @return an immutable list of the built artifacts.
+     * @throws IllegalArgumentException if n is negative or parallelism is less than
+     *                                  one.
+     */
+    public List<Artifact> buildBatch(int n, int parallelism) {
+        Artifact[] artifacts = new Artifact[Math.max(n, 0)];
+
+        runInParallel(n, parallelism, (from, to, random) -> {
+            for (long i = from; i < to; i++) {
+                artifacts[(int) i] = build(random);
+            }
+        });
+
+        return Collections.unmodifiableList(Arrays.asList(artifacts));
+    }// buildBatch
+
+    /**
+     * builds the given number of artifacts in columns, on the calling thread.
+     * 
+     * Instead of evaluating every descriptor for one artifact before moving on to
+     * the next, each descriptor is evaluated for a whole block of artifacts at
+     * once, through {@link IArtifactDescriptor#getDescriptions(IRandomSource[])}
+     * and its dependent variant. The descriptions are kept in one column per
+     * descriptor until the block is done, so each descriptor's data stays in cache
+     * while it is used.
+     * 
+     * Each artifact gets its own seed, and is the same as the one
+     * {@link #build(long)} builds with that seed.
+     * 
+     * @param n the number of artifacts to build
+     * @return an immutable list of the built artifacts.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    public List<Artifact> buildColumns(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException(
+                    String.format("ArtifactTemplate.buildColumns: n(%d) must be nonnegative", n));
+        }
+
+        List<Artifact> artifacts = new ArrayList<Artifact>(n);
+        IRandomSource random = threadRandom.get();
+
+        for (int start = 0; start < n; start += COLUMN_BLOCK_SIZE) {
+            long[] seeds = new long[Math.min(COLUMN_BLOCK_SIZE, n - start)];
+            for (int row = 0; row < seeds.length; row++) {
+                seeds[row] = random.nextLong();
+            }
+            buildBlock(seeds, artifacts);
+        }
+        return Collections.unmodifiableList(artifacts);
+    }// buildColumns
+
+    /**
+     * builds one artifact per seed, evaluating the steps of the plan column by
+     * column, and adds them to the list.
+     * 
+     * @param seeds     the seed of each artifact
+     * @param artifacts the list to add the artifacts to
+     */
+    private void buildBlock(long[] seeds, List<Artifact> artifacts) {
+        int rows = seeds.length;
+        IRandomSource[] rowRandoms = new IRandomSource[rows];
+        for (int row = 0; row < rows; row++) {
+            rowRandoms[row] = randomSource.withSeed(seeds[row]);
+        }
+
+        // the description of each step for each artifact
+        Description[][] columns = new Description[executionPlan.size()][];
+        boolean[][] triggered = pushdown != null ? new boolean[rows][pushdown.size()] : null;
+
+        for (int i = 0; i < columns.length; i++) {
+            IArtifactDescriptor descriptor = executionPlan.get(i);
+            Description[] column = new Description[rows];
+            columns[i] = column;
+
+            // the artifacts that need this step, with their random sources and merged
+            // dependents. Every artifact splits its source for every step, as build does.
+            int[] active = new int[rows];
+            IRandomSource[] activeRandoms = new IRandomSource[rows];
+            List<List<Description>> activeDependents = descriptor.isDependent()
+                    ? new ArrayList<List<Description>>(rows)
+                    : null;
+            int count = 0;
+
+            for (int row = 0; row < rows; row++) {
+                IRandomSource stepRandom = rowRandoms[row].split();
+
+                if (triggered != null && pushdown.isSkipped(i, triggered[row])) {
+                    column[row] = SKIPPED;
+                    continue;
+                }
+                List<Description> dependents = null;
+                if (activeDependents != null) {
+                    int parentRow = row;
+                    dependents = mergeDependents(descriptor, stepParents[i], parent -> columns[parent][parentRow]);
+                    if (dependents == null) {
+                        continue;
+                    }
+                    activeDependents.add(dependents);
+                }
+                active[count] = row;
+                activeRandoms[count] = stratify(i, dependents, stepRandom);
+                count++;
+            } // for every artifact
+
+            if (count > 0) {
+                IRandomSource[] randoms = Arrays.copyOf(activeRandoms, count);
+                Description[] evaluated;
+
+                if (constantSteps[i]) {
+                    evaluated = new Description[count];
+                    Arrays.fill(evaluated, constants[i]);
+                } else if (constrainedSteps[i]) {
+                    // each artifact has its own constraints, so evaluate them one at a time
+                    evaluated = new Description[count];
+                    for (int a = 0; a < count; a++) {
+                        int row = active[a];
+                        evaluated[a] = describeConstrained(i, activeDependents != null ? activeDependents.get(a) : null,
+                                parent -> columns[parent][row], randoms[a]);
+                    }
+                } else if (activeDependents == null) {
+                    evaluated = descriptor.getDescriptions(randoms);
+                } else {
+                    // turn the rows of dependents into one column per dependent category
+                    List<Description[]> dependentColumns = new ArrayList<Description[]>();
+                    for (int c = 0; c < descriptor.getDependentCategories().size(); c++) {
+                        Description[] dependentColumn = new Description[count];
+                        for (int a = 0; a < count; a++) {
+                            dependentColumn[a] = activeDependents.get(a).get(c);
+                        }
+                        dependentColumns.add(dependentColumn);
+                    }
+                    evaluated = descriptor.getDescriptions(dependentColumns, randoms);
+                }
+
+                for (int a = 0; a < count; a++) {
+                    column[active[a]] = evaluated[a];
+                }
+            } // if any artifact needs the step
+
+            if (triggered != null) {
+                for (int row = 0; row < rows; row++) {
+                    if (column[row] != null && !column[row].isEmpty()) {
+                        pushdown.trigger(i, triggered[row]);
+                    }
+                }
+            }
+        } // for every step
+
+        for (int row = 0; row < rows; row++) {
+            Description[] steps = new Description[columns.length];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = columns[i][row];
+            }
+            artifacts.add(new Artifact(this, steps, consumer, seedOf(seeds[row])));
+        }
+    }// buildBlock
+
+    /**
+     * builds the given number of artifacts on the given number of threads, and
+     * passes each one to the action as soon as it is built. Nothing is kept after
+     * the action returns, so this is suitable for very large batches.
+     * 
+     * The action is called from several threads at once, and must be thread safe.
+     * 
+     * @param n           the number of artifacts to build
+     * @param parallelism the number of threads to build with
+     * @param action      the action to perform on each artifact, such as
+     *                    {@code Artifact::output}
+     * @throws IllegalArgumentException if n is negative, parallelism is less than
+     *                                  one, or the action is null.
+     */
+    public void forEachBatch(long n, int parallelism, Consumer<? super Artifact> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("ArtifactTemplate.forEachBatch: action is null");
+        }
+
+        runInParallel(n, parallelism, (from, to, random) -> {
+            for (long i = from; i < to; i++) {
+                action.accept(build(random));
+            }
+        });
+    }// forEachBatch
+
+    /**
+     * returns a lazy, unbounded stream of artifacts built from this template.
+     * Artifacts are only built as the stream pulls them, so the stream should be
+     * limited, for example with {@code limit} or a short-circuiting operation.
+     * 
+     * The stream can be made parallel, and splits evenly between threads.
+     * 
+     * @return an unbounded stream of new artifacts.
+     */
+    public Stream<Artifact> stream() {
+        return StreamSupport.stream(new ArtifactSpliterator(this, 0, Long.MAX_VALUE, false), false);
+    }// stream
+
+    /**
+     * returns a lazy stream of exactly n artifacts built from this template.
+     * Artifacts are only built as the stream pulls them.
+     * 
+     * The stream knows its size, and splits evenly between threads when it is made
+     * parallel.
+     * 
+     * @param n the number of artifacts in the stream
+     * @return a stream of n new artifacts.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    public Stream<Artifact> stream(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException(
+                    String.format("ArtifactTemplate.stream: n(%d) must be nonnegative", n));
+        }
+        return StreamSupport.stream(new ArtifactSpliterator(this, 0, n, true), false);
+    }// stream
+
+    /**
+     * returns a publisher that builds exactly n artifacts for each subscriber, only
+     * as fast as the subscriber requests them.
+     * 
+     * @param n        the number of artifacts each subscriber receives
+     * @param executor the executor that artifacts are built and delivered on
+     * @return a publisher of artifacts.
+     * @see ArtifactPublisher
+     */
+    public Flow.Publisher<Artifact> publisher(long n, Executor executor) {
+        return new ArtifactPublisher(this, n, executor);
+    }// publisher
+
+    /**
+     * returns the validated graph of the descriptors this template was compiled
+     * from, including the descriptors that were pruned because they can never be
+     * evaluated.
+     * 
+     * @return the descriptor graph.
+     */
+    public DescriptorGraph getDescriptorGraph() {
+        return descriptorGraph;
+    }// getDescriptorGraph
+
+    /**
+     * returns the descriptors of this template, in the order they are evaluated.
+     * Descriptors that can never be evaluated, or are not needed by the
+     * projection, are not included.
+     * 
+     * @return an immutable list of descriptors.
+     */
+    public List<IArtifactDescriptor> getExecutionPlan() {
+        return executionPlan;
+    }// getExecutionPlan
+
+    /**
+     * returns the conditional filters of this template, in the order they are
+     * applied.
+     * 
+     * @return an immutable list of filters.
+     */
+    public List<IConditonalFilter> getFilters() {
+        return filters;
+    }// getFilters
+
+    /**
+     * returns the random source that this template's random sources are split
+     * from.
+     * 
+     * @return the random source.
+     */
+    public IRandomSource getRandomSource() {
+        return randomSource;
+    }// getRandomSource
+
+    /**
+     * returns the filters of this template, indexed by the category that triggers
+     * them.
+     * 
+     * @return the filter dispatch.
+     */
+    FilterDispatch getFilterDispatch() {
+        return filterDispatch;
+    }// getFilterDispatch
+
+    /**
+     * returns the dictionary that the artifacts of this template encode their
+     * descriptions with.
+     * 
+     * @return the dictionary.
+     */
+    ArtifactDictionary getDictionary() {
+        return dictionary;
+    }// getDictionary
+
+    /**
+     * returns the consumer that built artifacts are given to by
+     * {@link io.github.andrewdolge.artifactgenerator.Artifact#output()}.
+     * 
+     * @return the consumer, or null if there is none.
+     */
+    public Consumer<Artifact> getConsumer() {
+        return consumer;
+    }// getConsumer
+
+    /**
+     * Evaluates the steps of the execution plan, in plan order, storing the
+     * description made by each step in the array.
+     * 
+     * A dependent step gets the descriptions of its parent steps from the array,
+     * and is skipped (left null) if any of its categories has no description.
+     * 
+     * @param steps the description of each step. Steps that are not evaluated keep
+     *              their current value.
+     * @param toRun which steps to evaluate, or null to evaluate every step.
+     */
+    void evaluateSteps(Description[] steps, boolean[] toRun) {
+        evaluateSteps(steps, toRun, threadRandom.get());
+    }// evaluateSteps
+
+    /**
+     * Evaluates the steps of the execution plan. Each step draws from its own
+     * split of the given random source, in plan order, so a step gets the same
+     * numbers whether or not the steps before it run.
+     * 
+     * Only a full evaluation deals from the quota decks. A reroll draws at random,
+     * so it does not use up the cards that balance the built artifacts.
+     * 
+     * @see #evaluateSteps(Description[], boolean[])
+     */
+    private void evaluateSteps(Description[] steps, boolean[] toRun, IRandomSource random) {
+        // which pushed down filters have been triggered so far
+        boolean[] triggered = pushdown != null ? new boolean[pushdown.size()] : null;
+        boolean dealt = toRun == null;
+
+        for (int i = 0; i < steps.length; i++) {
+            IRandomSource stepRandom = random.split();
+
+            // a step skipped by an earlier evaluation is run again if it is no longer
+            // skipped, since it has no description to reuse.
+            if (toRun == null || toRun[i] || steps[i] == SKIPPED) {
+
+                IArtifactDescriptor descriptor = executionPlan.get(i);
+
+                if (triggered != null && pushdown.isSkipped(i, triggered)) {
+                    // a filter is certain to remove this description, so don't make it
+                    steps[i] = SKIPPED;
+                } else if (constantSteps[i]) {
+                    // the description cannot vary, so share the one made up front
+                    steps[i] = constants[i];
+                } else if (constrainedSteps[i]) {
+                    List<Description> dependents = descriptor.isDependent()
+                            ? mergeDependents(descriptor, stepParents[i], parent -> steps[parent])
+                            : null;
+                    steps[i] = !descriptor.isDependent() || dependents != null
+                            ? describeConstrained(i, dependents, parent -> steps[parent],
+                                    dealt ? stratify(i, dependents, stepRandom) : stepRandom)
+                            : null;
+                } else if (!descriptor.isDependent()) {
+                    steps[i] = descriptor.getDescription(dealt ? stratify(i, null, stepRandom) : stepRandom);
+                } else {
+                    List<Description> dependents = mergeDependents(descriptor, stepParents[i],
+                            parent -> steps[parent]);
+                    steps[i] = dependents != null
+                            ? descriptor.getDescription(dependents,
+                                    dealt ? stratify(i, dependents, stepRandom) : stepRandom)
+                            : null;
+                }
+            } // if the step should run
+
+            if (triggered != null && steps[i] != null && !steps[i].isEmpty()) {
+                pushdown.trigger(i, triggered);
+            }
+        } // for every step
+    }// evaluateSteps
+
+    /**
+     * determines whether a pushed down filter skips a step of an asynchronous
+     * build, once the steps that can trigger it are done. This is the same
+     * decision {@link #evaluateSteps(Description[], boolean[], IRandomSource)}
+     * makes in plan order.
+     * 
+     * @param step         the step of the execution plan
+     * @param skipTriggers the earlier steps that can trigger a filter that skips
+     *                     the step
+     * @param descriptions the descriptions of the finished steps
+     * @return true if the step's description would be removed by a filter.
+     */
+    private boolean isSkippedAsync(int step, int[] skipTriggers, IntFunction<Description> descriptions) {
+        if (skipTriggers.length == 0) {
+            return false;
+        }
+
+        boolean[] triggered = new boolean[pushdown.size()];
+        for (int trigger : skipTriggers) {
+            Description description = descriptions.apply(trigger);
+            if (description != null && !description.isEmpty()) {
+                pushdown.trigger(trigger, triggered);
+            }
+        }
+        return pushdown.isSkipped(step, triggered);
+    }// isSkippedAsync
+
+    /**
+     * returns the random source a step should draw from: the step's own source, or
+     * a source dealt from the quota decks if the step provides a quota category.
+     * 
+     * @param step       the step of the execution plan
+     * @param dependents the merged descriptions the step depends on, or null for
+     *                   an independent step
+     * @param random     the step's own random source
+     * @return the source the step should draw from.
+     */
+    private IRandomSource stratify(int step, List<Description> dependents, IRandomSource random) {
+        return quota != null ? quota.stratify(step, dependents, random) : random;
+    }// stratify
+
+    /**
+     * returns the seed to record for an artifact. An artifact with quota
+     * categories depends on the artifacts built before it, so its seed cannot
+     * build it again and is not recorded.
+     * 
+     * @param seed the seed the artifact was built with
+     * @return the seed, or empty if the template has quota categories.
+     */
+    private OptionalLong seedOf(long seed) {
+        return quota != null ? OptionalLong.empty() : OptionalLong.of(seed);
+    }// seedOf
+
+    /**
+     * finds the steps that have to be evaluated again to reroll a category: the
+     * steps that provide the category, and every step that depends on them.
+     * 
+     * @param category the category to reroll
+     * @return which steps to evaluate, or null if no step provides the category.
+     */
+    boolean[] getRerolledSteps(String category) {
+        boolean[] affected = new boolean[executionPlan.size()];
+        boolean found = false;
+
+        // parents always come before their children in the plan, so one pass is enough
+        for (int i = 0; i < affected.length; i++) {
+            if (category.equals(executionPlan.get(i).getCategory())) {
+                affected[i] = true;
+                found = true;
+            } else {
+                for (int parent : stepParents[i]) {
+                    affected[i] |= affected[parent];
+                }
+            }
+        } // for every step
+
+        return found ? affected : null;
+    }// getRerolledSteps
+
+    /**
+     * Merges the finished parent steps of a dependent descriptor into one
+     * description per dependent category, the same way an Artifact merges
+     * descriptions that share a category.
+     * 
+     * @param descriptor the dependent descriptor
+     * @param parents    the steps of the plan the descriptor depends on
+     * @param steps      returns the description of a finished step
+     * @return the descriptions for the descriptor's dependent categories, or null
+     *         if any of the categories has no description.
+     */
+    private static List<Description> mergeDependents(IArtifactDescriptor descriptor, int[] parents,
+            IntFunction<Description> steps) {
+
+        List<String> categories = descriptor.getDependentCategories();
+        List<Description> dependents = new ArrayList<Description>(categories.size());
+
+        for (String category : categories) {
+            Description merged = merge(category, parents, steps);
+            if (merged == null) {
+                return null;
+            }
+            dependents.add(merged);
+        } // for every dependent category
+
+        return dependents;
+    }// mergeDependents
+
+    /**
+     * merges the non-empty descriptions of one category made by the given steps
+     * into one description, as the artifact will.
+     * 
+     * @param category the category to merge
+     * @param parents  the steps that may provide the category
+     * @param steps    the description made by each step
+     * @return the merged description, or null if no step made a non-empty
+     *         description of the category.
+     */
+    private static Description merge(String category, int[] parents, IntFunction<Description> steps) {
+        Description merged = null;
+
+        for (int parent : parents) {
+            Description description = steps.apply(parent);
+            if (description != null && category.equals(description.getCategory()) && !description.isEmpty()) {
+                if (merged == null) {
+                    // the common case of a single parent needs no copying
+                    merged = description;
+                } else {
+                    // later descriptions go in front, as in Artifact.addDescription
+                    merged = Description.concat(category, description, merged);
+                }
+            }
+        } // for every parent
+
+        return merged;
+    }// merge
+
+    /**
+     * makes the description of a step with constraint categories, giving the
+     * descriptor the merged description of each of its constraint categories,
+     * or null for the ones the artifact does not have.
+     * 
+     * @param step       the step of the execution plan
+     * @param dependents the merged descriptions the step depends on, or null for
+     *                   an independent step
+     * @param steps      the description made by each earlier step
+     * @param random     the source the step draws from
+     * @return the description.
+     */
+    private Description describeConstrained(int step, List<Description> dependents, IntFunction<Description> steps,
+            IRandomSource random) {
+        IArtifactDescriptor descriptor = executionPlan.get(step);
+        List<String> categories = descriptor.getConstraintCategories();
+        List<Description> constraints = new ArrayList<Description>(categories.size());
+
+        for (String category : categories) {
+            constraints.add(merge(category, stepParents[step], steps));
+        }
+        return descriptor.getDescription(dependents, constraints, random);
+    }// describeConstrained
+
+    /**
+     * removes the steps of the plan that are not needed to make the given
+     * categories.
+     * 
+     * A step is kept if it provides one of the categories, or if a kept step
+     * depends on it. Steps that do not report a category are always kept, since
+     * they could provide anything.
+     * 
+     * @param plan       the execution plan
+     * @param parents    the parent steps of each step of the plan
+     * @param projection the categories to keep
+     * @return an immutable plan with only the needed steps, in the same order.
+     */
+    private static List<IArtifactDescriptor> project(List<IArtifactDescriptor> plan, int[][] parents,
+            Set<String> projection) {
+        boolean[] needed = new boolean[plan.size()];
+
+        // children always come after their parents in the plan, so walk it backwards
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            String category = plan.get(i).getCategory();
+            needed[i] |= category == null || projection.contains(category);
+
+            if (needed[i]) {
+                for (int parent : parents[i]) {
+                    needed[parent] = true;
+                }
+            }
+        } // for every step
+
+        List<IArtifactDescriptor> projected = new ArrayList<IArtifactDescriptor>();
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i]) {
+                projected.add(plan.get(i));
+            }
+        }
+        return List.copyOf(projected);
+    }// project
+
+    /**
+     * finds, for each step of the plan, the earlier steps that provide a category
+     * the step depends on, or is constrained by. Steps that do not report a
+     * category could provide anything, so they are parents of every later step
+     * that has a dependent or constraint category.
+     * 
+     * @param plan the execution plan
+     * @return the parent steps of each step, in plan order.
+     */
+    private static int[][] compileStepParents(List<IArtifactDescriptor> plan) {
+        int[][] parents = new int[plan.size()][];
+        Map<String, List<Integer>> providers = new HashMap<String, List<Integer>>();
+        List<Integer> anonymous = new ArrayList<Integer>();
+
+        for (int i = 0; i < plan.size(); i++) {
+            IArtifactDescriptor descriptor = plan.get(i);
+
+            Set<String> categories = new HashSet<String>(descriptor.getDependentCategories());
+            categories.addAll(descriptor.getConstraintCategories());
+
+            parents[i] = categories.isEmpty() ? new int[0]
+                    : Stream.concat(anonymous.stream(), categories.stream()
+                            .flatMap(category -> providers.getOrDefault(category, Collections.emptyList()).stream()))
+                            .mapToInt(Integer::intValue).sorted().toArray();
+
+            if (descriptor.getCategory() != null) {
+                providers.computeIfAbsent(descriptor.getCategory(), key -> new ArrayList<Integer>()).add(i);
+            } else {
+                anonymous.add(i);
+            }
+        } // for every step
+
+        return parents;
+    }// compileStepParents
+
+    /**
+     * Filters that can be applied while an artifact is generated, rather than
+     * after.
+     * 
+     * An exclusive component adds a filter that, once its trigger category is
+     * present, removes every category it does not accept. Once the trigger has a
+     * description, a step whose category the filter will remove does not need to
+     * run at all. This is only done when the outcome is certain to be the same:
+     * <ul>
+     * <li>every filter of the template is a
+     * {@link FilterConditions.CategoryPresent} condition with a
+     * {@link DescriptionFilters.AcceptOnly} filter, so the filters can be
+     * reasoned about,</li>
+     * <li>the filter accepts its own trigger, and so does every other filter, so
+     * the trigger is never removed before the filter is applied,</li>
+     * <li>the skipped step, and every step that depends on it, provides a category
+     * that the filter removes and that no filter is triggered by.</li>
+     * </ul>
+     */
+    private static class FilterPushdown {
+
+        // the number of filters that can be pushed down
+        private final int size;
+        // for each step, the pushed down filters triggered by its category
+        private final int[][] stepTriggers;
+        // for each step, the pushed down filters that make the step safe to skip
+        private final int[][] stepSkippedBy;
+        // for each step, the earlier steps that trigger a filter that skips it
+        private final int[][] stepSkipTriggers;
+
+        private FilterPushdown(List<IArtifactDescriptor> plan, int[][] parents, List<IConditonalFilter> filters) {
+            List<String> triggers = new ArrayList<String>();
+            List<Set<String>> accepted = new ArrayList<Set<String>>();
+
+            for (IConditonalFilter filter : filters) {
+                if (!(filter.getCondition() instanceof FilterConditions.CategoryPresent)
+                        || !(filter.getFilter() instanceof DescriptionFilters.AcceptOnly)) {
+                    // an opaque filter could depend on anything, so nothing can be skipped
+                    triggers.clear();
+                    accepted.clear();
+                    break;
+                }
+                triggers.add(((FilterConditions.CategoryPresent) filter.getCondition()).getCategory());
+                accepted.add(new HashSet<String>(((DescriptionFilters.AcceptOnly) filter.getFilter()).getCategories()));
+            } // for every filter
+
+            // keep the filters whose trigger is never removed by any filter
+            List<Integer> pushed = new ArrayList<Integer>();
+            for (int f = 0; f < triggers.size(); f++) {
+                String trigger = triggers.get(f);
+                if (accepted.stream().allMatch(categories -> categories.contains(trigger))) {
+                    pushed.add(f);
+                }
+            }
+
+            // the children of each step
+            List<List<Integer>> children = new ArrayList<List<Integer>>(plan.size());
+            for (int i = 0; i < plan.size(); i++) {
+                children.add(new ArrayList<Integer>());
+                for (int parent : parents[i]) {
+                    children.get(parent).add(i);
+                }
+            }
+
+            List<List<Integer>> triggeredBy = new ArrayList<List<Integer>>(plan.size());
+            List<List<Integer>> skippedBy = new ArrayList<List<Integer>>(plan.size());
+            for (int i = 0; i < plan.size(); i++) {
+                triggeredBy.add(new ArrayList<Integer>());
+                skippedBy.add(new ArrayList<Integer>());
+            }
+
+            for (int p = 0; p < pushed.size(); p++) {
+                int f = pushed.get(p);
+                boolean[] skippable = new boolean[plan.size()];
+
+                // children always come after their parents, so walk the plan backwards
+                for (int i = plan.size() - 1; i >= 0; i--) {
+                    String category = plan.get(i).getCategory();
+
+                    if (triggers.get(f).equals(category)) {
+                        triggeredBy.get(i).add(p);
+                    }
+
+                    skippable[i] = category != null && !accepted.get(f).contains(category)
+                            && !triggers.contains(category);
+                    for (int child : children.get(i)) {
+                        skippable[i] &= skippable[child];
+                    }
+                    if (skippable[i]) {
+                        skippedBy.get(i).add(p);
+                    }
+                } // for every step
+            } // for every pushed down filter
+
+            // the earlier steps that trigger a filter that skips each step
+            List<List<Integer>> skipTriggers = new ArrayList<List<Integer>>(plan.size());
+            for (int i = 0; i < plan.size(); i++) {
+                skipTriggers.add(new ArrayList<Integer>());
+                for (int j = 0; j < i; j++) {
+                    if (!Collections.disjoint(triggeredBy.get(j), skippedBy.get(i))) {
+                        skipTriggers.get(i).add(j);
+                    }
+                }
+            }
+
+            this.size = pushed.size();
+            this.stepTriggers = toArrays(triggeredBy);
+            this.stepSkippedBy = toArrays(skippedBy);
+            this.stepSkipTriggers = toArrays(skipTriggers);
+        }// constructor
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * marks the filters triggered by a step that made a description.
+         */
+        private void trigger(int step, boolean[] triggered) {
+            for (int f : stepTriggers[step]) {
+                triggered[f] = true;
+            }
+        }
+
+        /**
+         * determines whether a triggered filter will remove the step's description.
+         */
+        private boolean isSkipped(int step, boolean[] triggered) {
+            for (int f : stepSkippedBy[step]) {
+                if (triggered[f]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * returns the earlier steps whose descriptions can trigger a filter that
+         * skips the step.
+         */
+        private int[] getSkipTriggers(int step) {
+            return stepSkipTriggers[step];
+        }
+
+        private static int[][] toArrays(List<List<Integer>> lists) {
+            int[][] arrays = new int[lists.size()][];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+            return arrays;
+        }
+    }// inner class
+
+    /**
+     * A slice of a batch, run by one worker.
+     */
+    private interface BatchTask {
+
+        /**
+         * runs the slice from the start (inclusive) to the end (exclusive), drawing
+         * from the worker's own random source.
+         */
+        void run(long from, long to, IRandomSource random);
+    }// interface
+
+    /**
+     * Splits the range [0, n) into one contiguous slice per worker, and runs the
+     * task for every slice. Each worker runs on its own thread with its own split
+     * of the random source, and every worker is given n / parallelism items, with
+     * the remainder spread over the first workers. Waits until all workers have
+     * finished.
+     * 
+     * @param n           the total number of items
+     * @param parallelism the number of workers
+     * @param task        the task to run for each slice
+     */
+    private void runInParallel(long n, int parallelism, BatchTask task) {
+        if (n < 0) {
+            throw new IllegalArgumentException(
+                    String.format("ArtifactTemplate.runInParallel: n(%d) must be nonnegative", n));
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    String.format("ArtifactTemplate.runInParallel: parallelism(%d) must be at least one", parallelism));
+        }
+
+        // never start more workers than there are items
+        int workers = (int) Math.min(parallelism, Math.max(n, 1));
+
+        if (workers == 1) {
+            task.run(0L, n, threadRandom.get());
+            return;
+        }
+
+        // split the sources up front, so a seeded source always gives each slice the
+        // same numbers
+        IRandomSource[] randoms = new IRandomSource[workers];
+        IRandomSource random = threadRandom.get();
+        for (int worker = 0; worker < workers; worker++) {
+            randoms[worker] = random.split();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+            long share = n / workers;
+            long remainder = n % workers;
+            long from = 0;
+
+            for (int worker = 0; worker < workers; worker++) {
+                long start = from;
+                long end = start + share + (worker < remainder ? 1 : 0);
+                IRandomSource workerRandom = randoms[worker];
+                futures.add(executor.submit(() -> task.run(start, end, workerRandom)));
+                from = end;
+            } // for every worker
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+        } catch (ExecutionException e) {
+            // rethrow the worker's exception on the calling thread
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new IllegalStateException("ArtifactTemplate.runInParallel: a worker failed", e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ArtifactTemplate.runInParallel: interrupted while building", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }// runInParallel
+
+}// class
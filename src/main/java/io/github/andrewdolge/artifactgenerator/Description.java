@@ -15,9 +15,11 @@
  */
 package io.github.andrewdolge.artifactgenerator;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 
 
 /**
@@ -28,18 +30,27 @@ import java.util.List;
  * For example, a Description of an Artifact's color would have the category of "Color" and a 
  * list of colors, like "Red","Blue".
  * 
+ * Descriptions are immutable. The parts are kept in an array, and are read through a read-only
+ * view without being copied.
+ * Two descriptions are equal if they have the same category and the same parts, in order.
  * 
  */
 public class Description {
 
+    private static final String[] NO_PARTS = new String[0];
+
     private final  String category;
+
+    private final String[] data;
+
+    // the read-only view of the parts, created when it is first needed.
     private List<String> parts;
 
     /**
      * Constructor for an Empty, Default Description. Use this constructor instead of returning a Null Description.
      */
     public Description(String category){
-        this(category,Collections.emptyList());
+        this(category, NO_PARTS);
     }
 
     public Description(String category, List<String> parts) {
@@ -48,19 +59,110 @@ public class Description {
         if(parts==null){throw new IllegalArgumentException("Description.Constructor: parts is null.");}
 
         this.category = category;
-        this.parts = new LinkedList<String>();
+        this.data = parts.toArray(NO_PARTS);
+    }// constructor
+
+    /**
+     * Creates a description whose parts are the data at the given positions. Only
+     * the selected parts are copied, so the data can be shared by many
+     * descriptions, and neither array is kept.
+     * 
+     * @param category the category of the description
+     * @param data     the data the parts are selected from
+     * @param indices  the positions of the selected parts in the data
+     * @throws IllegalArgumentException if a position is outside the data.
+     */
+    public Description(String category, String[] data, int[] indices) {
+        this(category, data, indices, indices != null ? indices.length : 0);
+    }// constructor
 
+    /**
+     * Creates a description whose parts are the data at the first count of the
+     * given positions, so a reused array of positions can be passed. Neither
+     * array is kept.
+     * 
+     * @param category the category of the description
+     * @param data     the data the parts are selected from
+     * @param indices  the positions of the selected parts in the data
+     * @param count    the number of positions to use
+     * @throws IllegalArgumentException if the count or a position is out of bounds.
+     */
+    public Description(String category, String[] data, int[] indices, int count) {
+
+        if(category==null){throw new IllegalArgumentException("Description.Constructor: category is null.");}
+        if(data==null){throw new IllegalArgumentException("Description.Constructor: data is null.");}
+        if(indices==null){throw new IllegalArgumentException("Description.Constructor: indices is null.");}
+        if(count < 0 || count > indices.length){
+            throw new IllegalArgumentException(String.format(
+                    "Description.Constructor: count %d is out of bounds for %d indices", count, indices.length));
+        }// if
 
-        this.parts.addAll(parts);
+        String[] parts = new String[count];
+        for(int i = 0; i < count; i++){
+            if(indices[i] < 0 || indices[i] >= data.length){
+                throw new IllegalArgumentException(String.format(
+                        "Description.Constructor: index %d is out of bounds for %d values", indices[i], data.length));
+            }// if
+            parts[i] = data[indices[i]];
+        }// for
+
+        this.category = category;
+        this.data = parts;
     }// constructor
 
     /**
-     * Merges the other description into this description
-     * @return
+     * creates a description that owns the given array of parts.
      */
+    private Description(String category, String[] parts) {
+        this.category = category;
+        this.data = parts;
+    }// constructor
+
+    /**
+     * Creates a description that keeps the given array as its parts, without
+     * copying it. The array must not be changed afterwards.
+     * 
+     * @param category the category of the description
+     * @param parts    the parts of the description
+     * @return the description.
+     */
+    static Description of(String category, String[] parts) {
+        return new Description(category, parts);
+    }// of
+
+    /**
+     * Creates a description of the given category with the parts of the first
+     * description followed by the parts of the second, copying each part once.
+     * 
+     * @param category the category of the description
+     * @param first    the description whose parts come first
+     * @param second   the description whose parts come last
+     * @return the combined description.
+     */
+    static Description concat(String category, Description first, Description second) {
+        String[] parts = new String[first.size() + second.size()];
+        for (int i = 0; i < first.size(); i++) {
+            parts[i] = first.getPart(i);
+        }
+        for (int i = 0; i < second.size(); i++) {
+            parts[first.size() + i] = second.getPart(i);
+        }
+        return new Description(category, parts);
+    }// concat
+
+    /**
+     * Does nothing. Descriptions are immutable, so this description cannot take
+     * the parts of another.
+     *
+     * @param other the description to merge
+     * @deprecated merging never changed the description. To combine the parts of
+     *             two descriptions, make a new description with the parts of both.
+     */
+    @Deprecated
     public void merge(Description other){
-        
-    }
+
+    }//merge
+
     /**
      * Gets the name of this description's category.
      * @return a string identifying the category of this description.
@@ -74,18 +176,117 @@ public class Description {
      * @return true, if the description has no parts, false otherwise.
      */
     public boolean isEmpty(){
-        return this.parts.isEmpty();
+        return size() == 0;
     }//isEmpty
 
     /**
-     * returns an immutable list of strings that describe this Description.
+     * returns the number of parts of this description.
+     * @return the number of parts.
+     */
+    public int size(){
+        return this.data.length;
+    }//size
+
+    /**
+     * returns one part of this description, without creating a list.
+     * 
+     * @param index the position of the part
+     * @return the part at the position.
+     * @throws IndexOutOfBoundsException if there is no part at the position.
+     */
+    public String getPart(int index){
+        if(index < 0 || index >= size()){
+            throw new IndexOutOfBoundsException(
+                    String.format("Description.getPart: index %d is out of bounds for %d parts", index, size()));
+        }// if
+        return this.data[index];
+    }//getPart
+
+    /**
+     * passes each part of this description to the action, in order, without
+     * creating a list.
+     * 
+     * @param action the action to perform on each part
+     */
+    public void forEachPart(Consumer<? super String> action){
+        for(String part : this.data){
+            action.accept(part);
+        }
+    }//forEachPart
+
+    /**
+     * returns an immutable list of strings that describe this Description. The
+     * list is a read-only view of the parts, so reading it copies nothing.
      * 
      * @return a list of strings of the description
      */
     public List<String> getParts() {
-        return List.copyOf(this.parts);
+        // the view is immutable, so a race at most creates it twice
+        List<String> view = this.parts;
+        if(view == null){
+            view = new PartList(this);
+            this.parts = view;
+        }
+        return view;
     }//getParts
- 
 
+    @Override
+    public boolean equals(Object other) {
+        if(this == other){
+            return true;
+        }
+        if(!(other instanceof Description)){
+            return false;
+        }
+
+        Description description = (Description) other;
+        if(!this.category.equals(description.category) || this.size() != description.size()){
+            return false;
+        }
+        for(int i = 0; i < size(); i++){
+            if(!Objects.equals(this.getPart(i), description.getPart(i))){
+                return false;
+            }
+        }
+        return true;
+    }//equals
+
+    @Override
+    public int hashCode() {
+        // the same as the hash code of the list of parts, combined with the category
+        int hash = 1;
+        for(int i = 0; i < size(); i++){
+            String part = getPart(i);
+            hash = 31 * hash + (part != null ? part.hashCode() : 0);
+        }
+        return 31 * this.category.hashCode() + hash;
+    }//hashCode
+
+    @Override
+    public String toString() {
+        return "Description [category=" + category + ", parts=" + getParts() + "]";
+    }//toString
+
+    /**
+     * A read-only list view of the parts of a description.
+     */
+    private static final class PartList extends AbstractList<String> implements RandomAccess {
+
+        private final Description description;
+
+        private PartList(Description description) {
+            this.description = description;
+        }
+
+        @Override
+        public String get(int index) {
+            return description.getPart(index);
+        }
+
+        @Override
+        public int size() {
+            return description.size();
+        }
+    }// inner class
     
 }
\ No newline at end of file
@@ -0,0 +1,401 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+
+/**
+ * The validated dependency graph of a set of descriptors.
+ * 
+ * A descriptor graph orders descriptors so that every dependent descriptor
+ * comes after the descriptors that provide its categories, and prunes the
+ * dependent descriptors that can never be evaluated, because a category they
+ * depend on is not provided by any descriptor, or is part of a dependency
+ * cycle. Each problem is reported with the source (usually the file) of the
+ * offending descriptor, if it is known.
+ * 
+ * A graph is created when an ArtifactBuilder is compiled, and can be inspected
+ * with {@link ArtifactTemplate#getDescriptorGraph()}.
+ * 
+ */
+public final class DescriptorGraph {
+
+    private final List<IArtifactDescriptor> executionPlan;
+    private final List<IArtifactDescriptor> prunedDescriptors;
+    private final Set<String> unresolvedCategories;
+    private final List<Set<String>> cycles;
+    private final List<String> problems;
+
+    private DescriptorGraph(List<IArtifactDescriptor> executionPlan, List<IArtifactDescriptor> prunedDescriptors,
+            Set<String> unresolvedCategories, List<Set<String>> cycles, List<String> problems) {
+        this.executionPlan = List.copyOf(executionPlan);
+        this.prunedDescriptors = List.copyOf(prunedDescriptors);
+        this.unresolvedCategories = Collections.unmodifiableSet(unresolvedCategories);
+        this.cycles = List.copyOf(cycles);
+        this.problems = List.copyOf(problems);
+    }// constructor
+
+    /**
+     * Compiles the graph of the given descriptors.
+     * 
+     * Independent descriptors keep their insertion order and come first. A
+     * dependent descriptor is scheduled as soon as every category it depends on
+     * has at least one scheduled provider. This is a topological sort (Kahn's
+     * algorithm), linear in the number of descriptors and dependencies.
+     * 
+     * Constraint categories only order descriptors: a descriptor also waits for
+     * the first provider of each of its constraint categories, if any descriptor
+     * provides it. A descriptor that is only waiting on constraints when nothing
+     * else can be scheduled, for example because two descriptors constrain each
+     * other, is scheduled anyway, and is never pruned.
+     * 
+     * A descriptor that does not report its category, such as an anonymous class
+     * or a lambda, could provide any category, so it counts as a provider of every
+     * category once it is scheduled.
+     * 
+     * @param independent the independent descriptors
+     * @param dependent   the dependent descriptors
+     * @param sources     the source of each descriptor, for reporting problems.
+     *                    Descriptors without a known source may be left out.
+     * @return the compiled graph.
+     */
+    static DescriptorGraph compile(List<IArtifactDescriptor> independent, List<IArtifactDescriptor> dependent,
+            Map<IArtifactDescriptor, String> sources) {
+
+        List<IArtifactDescriptor> plan = new ArrayList<IArtifactDescriptor>(independent.size() + dependent.size());
+        List<IArtifactDescriptor> all = new ArrayList<IArtifactDescriptor>(plan.size());
+        all.addAll(independent);
+        all.addAll(dependent);
+
+        Set<String> declared = new HashSet<String>();
+        boolean anonymous = false;
+        for (IArtifactDescriptor descriptor : all) {
+            if (descriptor.getCategory() != null) {
+                declared.add(descriptor.getCategory());
+            } else {
+                anonymous = true;
+            }
+        }
+
+        // for each category, the descriptors that are still waiting on it as a
+        // dependency, and as a constraint
+        Map<String, List<IArtifactDescriptor>> waitingOn = new HashMap<String, List<IArtifactDescriptor>>();
+        Map<String, List<IArtifactDescriptor>> constrainedBy = new HashMap<String, List<IArtifactDescriptor>>();
+        // for each descriptor, how many of its categories have no provider yet
+        Map<IArtifactDescriptor, Integer> unresolved = new IdentityHashMap<IArtifactDescriptor, Integer>();
+        Map<IArtifactDescriptor, Integer> unconstrained = new IdentityHashMap<IArtifactDescriptor, Integer>();
+
+        // the descriptors that have been added to the ready queue
+        Set<IArtifactDescriptor> queued = Collections
+                .newSetFromMap(new IdentityHashMap<IArtifactDescriptor, Boolean>());
+        Deque<IArtifactDescriptor> ready = new ArrayDeque<IArtifactDescriptor>();
+
+        for (IArtifactDescriptor descriptor : all) {
+            Set<String> categories = new HashSet<String>(descriptor.getDependentCategories());
+            unresolved.put(descriptor, categories.size());
+            for (String category : categories) {
+                waitingOn.computeIfAbsent(category, key -> new ArrayList<IArtifactDescriptor>()).add(descriptor);
+            }
+
+            // only wait on constraints that something else may provide
+            Set<String> constraints = new HashSet<String>(descriptor.getConstraintCategories());
+            if (!anonymous) {
+                constraints.retainAll(declared);
+            }
+            constraints.removeAll(categories);
+            constraints.remove(descriptor.getCategory());
+            unconstrained.put(descriptor, constraints.size());
+            for (String category : constraints) {
+                constrainedBy.computeIfAbsent(category, key -> new ArrayList<IArtifactDescriptor>()).add(descriptor);
+            }
+
+            if (categories.isEmpty() && constraints.isEmpty()) {
+                queued.add(descriptor);
+                ready.add(descriptor);
+            }
+        } // for every descriptor
+
+        Set<String> provided = new HashSet<String>();
+        // the categories a descriptor without a category may provide
+        Set<String> every = new HashSet<String>(waitingOn.keySet());
+        every.addAll(constrainedBy.keySet());
+
+        // when nothing else can be scheduled, the wait of the first descriptor that is
+        // only waiting on constraints is broken
+        while (!ready.isEmpty() || releaseConstrained(all, unresolved, queued, ready)) {
+            IArtifactDescriptor descriptor = ready.poll();
+            plan.add(descriptor);
+
+            // a descriptor provides the category of the descriptions it creates.
+            // a descriptor that does not report its category may provide any.
+            String category = descriptor.getCategory();
+            Set<String> categories = category != null ? Set.of(category) : every;
+            for (String provides : categories) {
+                if (!provided.add(provides)) {
+                    continue;
+                }
+                for (IArtifactDescriptor waiting : waitingOn.getOrDefault(provides, Collections.emptyList())) {
+                    unresolved.merge(waiting, -1, Integer::sum);
+                    release(waiting, unresolved, unconstrained, queued, ready);
+                }
+                for (IArtifactDescriptor waiting : constrainedBy.getOrDefault(provides, Collections.emptyList())) {
+                    unconstrained.merge(waiting, -1, Integer::sum);
+                    release(waiting, unresolved, unconstrained, queued, ready);
+                }
+            } // for every newly provided category
+        } // while there are descriptors ready to be scheduled
+
+        // whatever was not scheduled can never be evaluated
+        List<IArtifactDescriptor> pruned = new ArrayList<IArtifactDescriptor>();
+        for (IArtifactDescriptor descriptor : dependent) {
+            if (unresolved.get(descriptor) > 0) {
+                pruned.add(descriptor);
+            }
+        }
+
+        return diagnose(plan, pruned, independent, dependent, sources);
+    }// compile
+
+    /**
+     * adds a descriptor to the ready queue once it is no longer waiting on any
+     * category.
+     */
+    private static void release(IArtifactDescriptor descriptor, Map<IArtifactDescriptor, Integer> unresolved,
+            Map<IArtifactDescriptor, Integer> unconstrained, Set<IArtifactDescriptor> queued,
+            Deque<IArtifactDescriptor> ready) {
+        if (unresolved.get(descriptor) == 0 && unconstrained.get(descriptor) == 0 && queued.add(descriptor)) {
+            ready.add(descriptor);
+        }
+    }// release
+
+    /**
+     * adds the first descriptor that is only waiting on constraints to the ready
+     * queue.
+     * 
+     * @return true, if a descriptor was added. false if every descriptor that is
+     *         not queued is waiting on a dependency.
+     */
+    private static boolean releaseConstrained(List<IArtifactDescriptor> descriptors,
+            Map<IArtifactDescriptor, Integer> unresolved, Set<IArtifactDescriptor> queued,
+            Deque<IArtifactDescriptor> ready) {
+        for (IArtifactDescriptor descriptor : descriptors) {
+            if (unresolved.get(descriptor) == 0 && queued.add(descriptor)) {
+                ready.add(descriptor);
+                return true;
+            }
+        }
+        return false;
+    }// releaseConstrained
+
+    /**
+     * Works out why each pruned descriptor can never be evaluated, and builds the
+     * graph.
+     */
+    private static DescriptorGraph diagnose(List<IArtifactDescriptor> plan, List<IArtifactDescriptor> pruned,
+            List<IArtifactDescriptor> independent, List<IArtifactDescriptor> dependent,
+            Map<IArtifactDescriptor, String> sources) {
+
+        // every category that some descriptor claims to provide
+        Set<String> declared = new HashSet<String>();
+        for (List<IArtifactDescriptor> descriptors : List.of(independent, dependent)) {
+            for (IArtifactDescriptor descriptor : descriptors) {
+                if (descriptor.getCategory() != null) {
+                    declared.add(descriptor.getCategory());
+                }
+            }
+        }
+
+        // the edges between the categories of the pruned descriptors, from the
+        // category depended on to the category provided.
+        Map<String, Set<String>> edges = new LinkedHashMap<String, Set<String>>();
+        Set<String> unresolvedCategories = new LinkedHashSet<String>();
+
+        for (IArtifactDescriptor descriptor : pruned) {
+            for (String parent : descriptor.getDependentCategories()) {
+                if (!declared.contains(parent)) {
+                    unresolvedCategories.add(parent);
+                } else if (descriptor.getCategory() != null) {
+                    edges.computeIfAbsent(parent, key -> new LinkedHashSet<String>()).add(descriptor.getCategory());
+                }
+            }
+        } // for every pruned descriptor
+
+        List<Set<String>> cycles = findCycles(edges);
+
+        List<String> problems = new ArrayList<String>();
+        for (IArtifactDescriptor descriptor : pruned) {
+            problems.add(describeProblem(descriptor, sources.get(descriptor), unresolvedCategories, cycles));
+        }
+
+        return new DescriptorGraph(plan, pruned, unresolvedCategories, cycles, problems);
+    }// diagnose
+
+    /**
+     * writes a message that explains why a descriptor was pruned.
+     */
+    private static String describeProblem(IArtifactDescriptor descriptor, String source,
+            Set<String> unresolvedCategories, List<Set<String>> cycles) {
+
+        String prefix = String.format("%s: descriptor for category '%s'", source != null ? source : "<unknown source>",
+                descriptor.getCategory());
+
+        for (String parent : descriptor.getDependentCategories()) {
+            if (unresolvedCategories.contains(parent)) {
+                return String.format("%s depends on '%s', which no descriptor provides", prefix, parent);
+            }
+        }
+        for (Set<String> cycle : cycles) {
+            if (cycle.contains(descriptor.getCategory())) {
+                return String.format("%s is part of a dependency cycle between %s", prefix, cycle);
+            }
+        }
+        return String.format("%s depends on %s, which can never be provided", prefix,
+                descriptor.getDependentCategories());
+    }// describeProblem
+
+    /**
+     * finds the cycles of the category graph, as its strongly connected components
+     * with more than one category, or with a category that depends on itself.
+     * This is Tarjan's algorithm.
+     * 
+     * @param edges the categories that depend on each category
+     * @return the categories of each cycle.
+     */
+    private static List<Set<String>> findCycles(Map<String, Set<String>> edges) {
+        List<Set<String>> cycles = new ArrayList<Set<String>>();
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        Map<String, Integer> lowLink = new HashMap<String, Integer>();
+        Deque<String> stack = new ArrayDeque<String>();
+        Set<String> onStack = new HashSet<String>();
+
+        for (String category : edges.keySet()) {
+            if (!index.containsKey(category)) {
+                connect(category, edges, index, lowLink, stack, onStack, cycles);
+            }
+        }
+        return cycles;
+    }// findCycles
+
+    /**
+     * the recursive step of Tarjan's algorithm.
+     */
+    private static void connect(String category, Map<String, Set<String>> edges, Map<String, Integer> index,
+            Map<String, Integer> lowLink, Deque<String> stack, Set<String> onStack, List<Set<String>> cycles) {
+
+        index.put(category, index.size());
+        lowLink.put(category, index.get(category));
+        stack.push(category);
+        onStack.add(category);
+
+        for (String next : edges.getOrDefault(category, Collections.emptySet())) {
+            if (!index.containsKey(next)) {
+                connect(next, edges, index, lowLink, stack, onStack, cycles);
+                lowLink.put(category, Math.min(lowLink.get(category), lowLink.get(next)));
+            } else if (onStack.contains(next)) {
+                lowLink.put(category, Math.min(lowLink.get(category), index.get(next)));
+            }
+        }
+
+        // the category is the root of a strongly connected component
+        if (lowLink.get(category).equals(index.get(category))) {
+            Set<String> component = new LinkedHashSet<String>();
+            String member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(member);
+            } while (!member.equals(category));
+
+            boolean selfLoop = edges.getOrDefault(category, Collections.emptySet()).contains(category);
+            if (component.size() > 1 || selfLoop) {
+                cycles.add(component);
+            }
+        } // if root
+    }// connect
+
+    /**
+     * returns the descriptors that can be evaluated, in the order they should be
+     * evaluated. Pruned descriptors are not included.
+     * 
+     * @return an immutable list of descriptors.
+     */
+    public List<IArtifactDescriptor> getExecutionPlan() {
+        return executionPlan;
+    }// getExecutionPlan
+
+    /**
+     * returns the dependent descriptors that can never be evaluated, and were
+     * removed from the execution plan.
+     * 
+     * @return an immutable list of descriptors.
+     */
+    public List<IArtifactDescriptor> getPrunedDescriptors() {
+        return prunedDescriptors;
+    }// getPrunedDescriptors
+
+    /**
+     * returns the categories that descriptors depend on, but that no descriptor
+     * provides.
+     * 
+     * @return an immutable set of categories.
+     */
+    public Set<String> getUnresolvedCategories() {
+        return unresolvedCategories;
+    }// getUnresolvedCategories
+
+    /**
+     * returns the dependency cycles between categories. Each cycle is the set of
+     * categories that depend on each other.
+     * 
+     * @return an immutable list of cycles.
+     */
+    public List<Set<String>> getCycles() {
+        return cycles;
+    }// getCycles
+
+    /**
+     * returns a readable message for every pruned descriptor, explaining why it
+     * can never be evaluated and where it came from.
+     * 
+     * @return an immutable list of messages, empty if the graph has no problems.
+     */
+    public List<String> getProblems() {
+        return problems;
+    }// getProblems
+
+    /**
+     * determines whether every descriptor can be evaluated.
+     * 
+     * @return true, if no descriptor was pruned. false otherwise.
+     */
+    public boolean isValid() {
+        return prunedDescriptors.isEmpty();
+    }// isValid
+
+}// class
@@ -0,0 +1,106 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.andrewdolge.artifactgenerator.components.filters.FilterConditions;
+import io.github.andrewdolge.artifactgenerator.components.filters.IConditonalFilter;
+
+/**
+ * The filters of a template, indexed by the category that triggers them.
+ * 
+ * A filter whose condition is a {@link FilterConditions.CategoryPresent} can
+ * only apply to an artifact that has its trigger category, so only the filters
+ * triggered by the categories an artifact has are checked. Filters with any
+ * other condition are always checked. With many exclusive components, most of
+ * whose categories an artifact does not have, this keeps the cost of filtering
+ * close to the number of categories of the artifact.
+ */
+final class FilterDispatch {
+
+    private final int size;
+
+    // for each trigger category, the positions of the filters it triggers
+    private final Map<String, int[]> byTrigger;
+
+    // the positions of the filters that are always checked
+    private final int[] unindexed;
+
+    /**
+     * indexes the given filters.
+     * 
+     * @param filters the filters, in the order they are applied
+     */
+    FilterDispatch(List<IConditonalFilter> filters) {
+        Map<String, List<Integer>> triggered = new HashMap<String, List<Integer>>();
+        List<Integer> always = new ArrayList<Integer>();
+
+        for (int f = 0; f < filters.size(); f++) {
+            if (filters.get(f).getCondition() instanceof FilterConditions.CategoryPresent) {
+                String trigger = ((FilterConditions.CategoryPresent) filters.get(f).getCondition()).getCategory();
+                triggered.computeIfAbsent(trigger, key -> new ArrayList<Integer>()).add(f);
+            } else {
+                always.add(f);
+            }
+        } // for every filter
+
+        this.size = filters.size();
+        this.byTrigger = new HashMap<String, int[]>();
+        triggered.forEach((trigger, positions) -> byTrigger.put(trigger,
+                positions.stream().mapToInt(Integer::intValue).toArray()));
+        this.unindexed = always.stream().mapToInt(Integer::intValue).toArray();
+    }// constructor
+
+    /**
+     * determines whether there are no filters.
+     * 
+     * @return true, if there are no filters. false otherwise.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }// isEmpty
+
+    /**
+     * finds the filters that may apply to an artifact with the given categories.
+     * Their conditions still have to be checked, in order, since an earlier
+     * filter may remove a later filter's trigger.
+     * 
+     * @param categories the categories of the artifact
+     * @return the positions of the filters to check.
+     */
+    BitSet candidates(Set<String> categories) {
+        BitSet candidates = new BitSet(size);
+        for (int f : unindexed) {
+            candidates.set(f);
+        }
+        for (String category : categories) {
+            int[] positions = byTrigger.get(category);
+            if (positions != null) {
+                for (int f : positions) {
+                    candidates.set(f);
+                }
+            }
+        }
+        return candidates;
+    }// candidates
+
+}// class
@@ -0,0 +1,224 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IRandomSource;
+
+/**
+ * Stratified random positions for the quota categories of a template.
+ * 
+ * A descriptor selects its data with random positions drawn by
+ * {@link IRandomSource#nextInt(int)}. For a quota category, those positions are
+ * instead dealt from a shuffled deck holding every position once, and the deck
+ * is only shuffled again once every card has been dealt. Over n artifacts, each
+ * position is therefore dealt either floor(n / size) or ceil(n / size) times,
+ * with no artifacts thrown away.
+ * 
+ * There is a deck for every step, every bucket of dependent data (the parts of
+ * the descriptions the step depends on), and every bound, so each bucket of
+ * dependent data is balanced on its own. The decks are shared by every thread
+ * building from the template. The decks of a step and bucket are looked up once
+ * per step, and hold at most MAX_CARDS cards in all; once they are full, new
+ * buckets and bounds are drawn at random.
+ * 
+ * Rerolling an artifact does not deal from the decks, so the coverage of the
+ * artifacts that were built is not skewed by rerolls.
+ */
+final class QuotaDecks {
+
+    // bounds above this are too large to deal, and are drawn at random
+    private static final int MAX_DECK_SIZE = 1 << 16;
+
+    // the most cards that all of the decks together may hold
+    private static final long MAX_CARDS = 1 << 22;
+
+    // the bucket of an independent step
+    private static final List<Description> NO_BUCKET = Collections.emptyList();
+
+    // for each step of the execution plan, the decks of each bucket, or null if
+    // the step has no quota
+    private final List<Map<List<Description>, Decks>> stepDecks;
+
+    // the number of cards in all of the decks
+    private final AtomicLong cards;
+
+    /**
+     * creates the decks for the steps of the plan that provide one of the
+     * categories.
+     * 
+     * @param plan       the execution plan
+     * @param categories the quota categories
+     */
+    QuotaDecks(List<IArtifactDescriptor> plan, Set<String> categories) {
+        this.stepDecks = new ArrayList<Map<List<Description>, Decks>>(plan.size());
+        for (IArtifactDescriptor descriptor : plan) {
+            // a descriptor that does not report its category cannot have a quota
+            String category = descriptor.getCategory();
+            stepDecks.add(category != null && categories.contains(category)
+                    ? new ConcurrentHashMap<List<Description>, Decks>()
+                    : null);
+        }
+        this.cards = new AtomicLong();
+    }// constructor
+
+    /**
+     * returns the random source a step should draw from: the given source, or, if
+     * the step has a quota, a source that deals its positions from the step's
+     * decks.
+     * 
+     * @param step       the step of the execution plan
+     * @param dependents the descriptions the step depends on, or null for an
+     *                   independent step
+     * @param random     the step's own random source
+     * @return the source to draw from.
+     */
+    IRandomSource stratify(int step, List<Description> dependents, IRandomSource random) {
+        Map<List<Description>, Decks> buckets = stepDecks.get(step);
+        if (buckets == null) {
+            return random;
+        }
+
+        // descriptions are compared by value, so the dependents themselves are the
+        // key, and only a new bucket is copied
+        List<Description> bucket = dependents != null ? dependents : NO_BUCKET;
+
+        Decks decks = buckets.get(bucket);
+        if (decks == null) {
+            if (cards.get() >= MAX_CARDS) {
+                return random;
+            }
+            decks = buckets.computeIfAbsent(List.copyOf(bucket), key -> new Decks());
+        }
+        return new DeckSource(decks, random);
+    }// stratify
+
+    /**
+     * A random source that deals bounded integers from the decks of one step and
+     * bucket, and draws everything else from the step's own source.
+     */
+    private class DeckSource implements IRandomSource {
+
+        private final Decks decks;
+        private final IRandomSource random;
+
+        private DeckSource(Decks decks, IRandomSource random) {
+            this.decks = decks;
+            this.random = random;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            Deck deck = bound > 1 && bound <= MAX_DECK_SIZE ? decks.get(bound) : null;
+            return deck != null ? deck.deal(random) : random.nextInt(bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return random.nextDouble();
+        }
+
+        @Override
+        public long nextLong() {
+            return random.nextLong();
+        }
+
+        @Override
+        public boolean isStratified() {
+            return true;
+        }
+
+        @Override
+        public IRandomSource split() {
+            return new DeckSource(decks, random.split());
+        }
+
+        @Override
+        public IRandomSource withSeed(long seed) {
+            return new DeckSource(decks, random.withSeed(seed));
+        }
+    }// inner class
+
+    /**
+     * The decks of one step and bucket, indexed by their bound.
+     */
+    private final class Decks {
+
+        private Deck[] byBound = new Deck[0];
+
+        /**
+         * returns the deck of the given bound, creating it if there is room for its
+         * cards.
+         * 
+         * @return the deck, or null if the decks are full.
+         */
+        private synchronized Deck get(int bound) {
+            if (bound >= byBound.length) {
+                byBound = Arrays.copyOf(byBound, Math.min(Math.max(bound + 1, byBound.length * 2), MAX_DECK_SIZE + 1));
+            }
+            if (byBound[bound] == null) {
+                if (cards.addAndGet(bound) > MAX_CARDS) {
+                    cards.addAndGet(-bound);
+                    return null;
+                }
+                byBound[bound] = new Deck(bound);
+            }
+            return byBound[bound];
+        }// get
+    }// inner class
+
+    /**
+     * A deck of the positions [0, size), dealt in a random order.
+     */
+    private static final class Deck {
+
+        private final int[] cards;
+        private int dealt;
+
+        private Deck(int size) {
+            this.cards = new int[size];
+            for (int i = 0; i < size; i++) {
+                cards[i] = i;
+            }
+        }
+
+        /**
+         * deals the next card, shuffling as it goes: each deal swaps a random card
+         * that has not been dealt to the front of the remaining cards.
+         */
+        private synchronized int deal(IRandomSource random) {
+            if (dealt == cards.length) {
+                dealt = 0;
+            }
+            int swap = dealt + random.nextInt(cards.length - dealt);
+            int card = cards[swap];
+            cards[swap] = cards[dealt];
+            cards[dealt] = card;
+            dealt++;
+            return card;
+        }
+    }// inner class
+
+}// class
@@ -61,4 +61,14 @@ public interface IArtifactComponentFactory {
      */
     public List<IConditonalFilter> createFilters();
 
+    /**
+     * returns the name of the source the components were created from, such as a
+     * file name. Used to report problems with the components.
+     * 
+     * @return the name of the source, or null if it is not known. null by default.
+     */
+    public default String getSourceName() {
+        return null;
+    }
+
 }
\ No newline at end of file
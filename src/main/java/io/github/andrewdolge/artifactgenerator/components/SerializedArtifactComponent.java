@@ -25,12 +25,15 @@ public class SerializedArtifactComponent {
 
     private String category;
     private List<String> data;
+    private List<Double> weights;
 
     private String dependentCategory;
     private Map<String, List<String>> dependentData;
 
     private List<String> exclusive;
 
+    private List<SerializedConstraint> constraints;
+
     private SerializedCustomSelector selector;
 
     public SerializedArtifactComponent() {
@@ -100,6 +103,14 @@ public class SerializedArtifactComponent {
                 && !getDependentData().isEmpty();
     }
 
+    public boolean hasWeights() {
+        return hasIndependentData() && getWeights() != null;
+    }
+
+    public boolean hasConstraints() {
+        return getCategory() != null && getConstraints() != null && !getConstraints().isEmpty();
+    }
+
     public boolean hasSelectionStrategy() {
         return this.selector != null;
     }
@@ -120,6 +131,14 @@ public class SerializedArtifactComponent {
         this.data = data;
     }
 
+    public List<Double> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(List<Double> weights) {
+        this.weights = weights;
+    }
+
     public String getDependentCategory() {
         return dependentCategory;
     }
@@ -144,10 +163,19 @@ public class SerializedArtifactComponent {
         this.exclusive = exclusive;
     }
 
+    public List<SerializedConstraint> getConstraints() {
+        return constraints;
+    }
+
+    public void setConstraints(List<SerializedConstraint> constraints) {
+        this.constraints = constraints;
+    }
+
     @Override
     public String toString() {
-        return "SerializedJsonComponent [category=" + category + ", data=" + data + ", dependentCategory="
-                + dependentCategory + ", dependentData=" + dependentData + ", exclusive=" + exclusive + "]";
+        return "SerializedJsonComponent [category=" + category + ", data=" + data + ", weights=" + weights
+                + ", dependentCategory=" + dependentCategory + ", dependentData=" + dependentData + ", exclusive=" + exclusive
+                + ", constraints=" + constraints + "]";
     }
 
     public SerializedCustomSelector getSelector() {
@@ -166,4 +194,39 @@ public class SerializedArtifactComponent {
         }
     }
 
+    /**
+     * returns a strategy that selects from the data according to the weights. If
+     * there is a selector, it decides how many items are selected, otherwise one
+     * item is selected.
+     * 
+     * @return the weighted selection strategy, or null if there are no weights.
+     * @throws IllegalArgumentException if there is not exactly one weight per
+     *                                  item of data.
+     */
+    public ISelectionStrategy<String> getWeightedStrategy() {
+        if (!hasWeights()) {
+            return null;
+        }
+        if (weights.size() != data.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "SerializedArtifactComponent.getWeightedStrategy: category '%s' has %d weights for %d data",
+                    category, weights.size(), data.size()));
+        }
+
+        double[] weightArray = new double[weights.size()];
+        for (int i = 0; i < weightArray.length; i++) {
+            if (weights.get(i) == null) {
+                throw new IllegalArgumentException(String.format(
+                        "SerializedArtifactComponent.getWeightedStrategy: category '%s' has a null weight", category));
+            }
+            weightArray[i] = weights.get(i);
+        }
+
+        if (selector != null) {
+            return selector.getWeightedSelectionStrategy(weightArray);
+        } else {
+            return ISelectionStrategy.weightedSelection(weightArray);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components;
+
+import java.util.List;
+
+public class SerializedConstraint {
+
+    // the category that triggers the constraint
+    private String when;
+    // the parts of the category that trigger it, or null for any part
+    private List<String> is;
+    // the data that cannot be selected once it is triggered
+    private List<String> exclude;
+
+    public SerializedConstraint() {
+    }
+
+    public boolean isValid() {
+        return when != null && exclude != null;
+    }
+
+    public String getWhen() {
+        return when;
+    }
+
+    public void setWhen(String when) {
+        this.when = when;
+    }
+
+    public List<String> getIs() {
+        return is;
+    }
+
+    public void setIs(List<String> is) {
+        this.is = is;
+    }
+
+    public List<String> getExclude() {
+        return exclude;
+    }
+
+    public void setExclude(List<String> exclude) {
+        this.exclude = exclude;
+    }
+
+    @Override
+    public String toString() {
+        return "SerializedConstraint [when=" + when + ", is=" + is + ", exclude=" + exclude + "]";
+    }
+
+}
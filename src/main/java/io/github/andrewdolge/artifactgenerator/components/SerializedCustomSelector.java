@@ -16,6 +16,7 @@
 package io.github.andrewdolge.artifactgenerator.components;
 
 import io.github.andrewdolge.artifactgenerator.components.descriptors.ISelectionStrategy;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources;
 
 public class SerializedCustomSelector {
 
@@ -25,6 +26,10 @@ public class SerializedCustomSelector {
     private double multiplier;
     private boolean withReplacement;
 
+    // the kind of random source this selector selects with, or null to use the artifact's.
+    private String random;
+    private Long seed;
+
     public SerializedCustomSelector() {
         // set defaults to emulate oneRandomDraw.
         min = 1;
@@ -36,9 +41,46 @@ public class SerializedCustomSelector {
 
     public ISelectionStrategy<String> getSelectionStrategy() {
 
-        return ISelectionStrategy.customSelectionStrategy(min, max, probability, multiplier, withReplacement);
+        ISelectionStrategy<String> strategy = ISelectionStrategy.customSelectionStrategy(min, max, probability,
+                multiplier, withReplacement);
+
+        return withOwnRandomSource(strategy);
+    }
+
+    /**
+     * returns a strategy that selects from weighted data, using the settings of
+     * this selector to decide how many items to select.
+     * 
+     * @param weights the weight of each item of the data
+     * @return a weighted selection strategy.
+     * @throws IllegalArgumentException if this selector is without replacement,
+     *                                  since weighted data is always selected with
+     *                                  replacement.
+     */
+    public ISelectionStrategy<String> getWeightedSelectionStrategy(double[] weights) {
+        if (!withReplacement) {
+            throw new IllegalArgumentException(
+                    "SerializedCustomSelector.getWeightedSelectionStrategy: weighted data must be selected with replacement");
+        }
+
+        ISelectionStrategy<String> strategy = ISelectionStrategy.customWeightedSelectionStrategy(weights, min, max,
+                probability, multiplier);
+
+        return withOwnRandomSource(strategy);
     }
 
+    /**
+     * makes the strategy select with this selector's own random source, if it
+     * has one. A seed without a source name uses a splittable source.
+     */
+    private ISelectionStrategy<String> withOwnRandomSource(ISelectionStrategy<String> strategy) {
+        if (random == null && seed == null) {
+            return strategy;
+        }
+        return ISelectionStrategy.withRandomSource(strategy,
+                RandomSources.byName(random != null ? random : "splittable", seed));
+    }// withOwnRandomSource
+
     public int getMin() {
         return min;
     }
@@ -79,4 +121,20 @@ public class SerializedCustomSelector {
         this.withReplacement = withReplacement;
     }
 
+    public String getRandom() {
+        return random;
+    }
+
+    public void setRandom(String random) {
+        this.random = random;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
 }
\ No newline at end of file
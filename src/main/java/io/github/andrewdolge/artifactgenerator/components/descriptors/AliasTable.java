@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+/**
+ * A table for drawing weighted indices in constant time, built with Vose's alias
+ * method.
+ * 
+ * The table splits the weights into equally likely columns of two indices each.
+ * A draw picks a column, then one of its two indices, so it costs one random
+ * integer and one random double no matter how many weights there are or how
+ * skewed they are. Building the table is O(n).
+ * 
+ * Tables are immutable, and safe to share between threads.
+ */
+final class AliasTable {
+
+    // the chance of keeping each column's own index, rather than its alias
+    private final double[] probability;
+    private final int[] alias;
+
+    // the only index with a positive weight, or -1 if there is more than one
+    private final int onlyIndex;
+
+    /**
+     * builds a table for the given weights.
+     * 
+     * @param weights the weight of each index. Must be finite and nonnegative,
+     *                with at least one positive weight.
+     * @throws IllegalArgumentException if the weights are not valid.
+     */
+    AliasTable(double[] weights) {
+        if (weights == null || weights.length == 0) {
+            throw new IllegalArgumentException("AliasTable: there must be at least one weight");
+        }
+
+        double total = 0.0;
+        int positive = -1;
+        for (int i = 0; i < weights.length; i++) {
+            if (!(weights[i] >= 0.0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException(
+                        String.format("AliasTable: weight %d (%f) must be finite and nonnegative", i, weights[i]));
+            }
+            total += weights[i];
+            if (weights[i] > 0.0) {
+                positive = positive == -1 ? i : -2;
+            }
+        }
+        if (!(total > 0.0)) {
+            throw new IllegalArgumentException("AliasTable: at least one weight must be positive");
+        }
+
+        this.onlyIndex = Math.max(positive, -1);
+
+        int n = weights.length;
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        // scale the weights so that the average is one, and sort the indices into
+        // those below and above the average. Both work lists share one array: small
+        // indices fill it from the front, large ones from the back.
+        double[] scaled = new double[n];
+        int[] work = new int[n];
+        int small = 0;
+        int large = n;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                work[small++] = i;
+            } else {
+                work[--large] = i;
+            }
+        }
+
+        // fill each small column with the excess of a large one
+        while (small > 0 && large < n) {
+            int less = work[--small];
+            int more = work[large++];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                work[small++] = more;
+            } else {
+                work[--large] = more;
+            }
+        } // while both lists have indices
+
+        // whatever is left is full, give or take rounding error
+        while (small > 0) {
+            probability[work[--small]] = 1.0;
+        }
+        while (large < n) {
+            probability[work[large++]] = 1.0;
+        }
+    }// constructor
+
+    /**
+     * returns the number of weights in the table.
+     * 
+     * @return the number of indices that can be drawn.
+     */
+    int size() {
+        return probability.length;
+    }
+
+    /**
+     * returns the index that is always drawn, if only one index has a positive
+     * weight.
+     * 
+     * @return the only index that can be drawn, or -1 if there is more than one.
+     */
+    int onlyIndex() {
+        return onlyIndex;
+    }
+
+    /**
+     * draws an index, with a chance proportional to its weight.
+     * 
+     * @param random the random source to draw from
+     * @return an index in [0, size).
+     */
+    int next(IRandomSource random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }// next
+
+}// class
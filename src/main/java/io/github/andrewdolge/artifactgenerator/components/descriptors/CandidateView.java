@@ -0,0 +1,99 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of the candidates of several ranges of an array of data, one
+ * after the other, without copying them.
+ * 
+ * The ranges are kept with the offset of each range in the list, so finding a
+ * candidate is a binary search over the offsets. Making the view costs time in
+ * the number of ranges, rather than the number of candidates.
+ */
+final class CandidateView extends AbstractList<String> implements RandomAccess {
+
+    private final String[] values;
+
+    // the position of the first candidate of each range in the values
+    private final int[] starts;
+
+    // offsets[r] is the position of the first candidate of range r in the list,
+    // and the last offset is the number of candidates.
+    private final int[] offsets;
+
+    /**
+     * creates a view of the given ranges of the values. Nothing is copied, so the
+     * values must not be changed afterwards.
+     * 
+     * @param values  the data the ranges are in
+     * @param starts  the position of the first value of each range
+     * @param lengths the number of values of each range
+     * @param count   the number of ranges
+     */
+    CandidateView(String[] values, int[] starts, int[] lengths, int count) {
+        this.values = values;
+        this.starts = new int[count];
+        this.offsets = new int[count + 1];
+
+        // empty ranges are left out, so the offsets only ever increase
+        int ranges = 0;
+        for (int r = 0; r < count; r++) {
+            if (lengths[r] > 0) {
+                this.starts[ranges] = starts[r];
+                this.offsets[ranges + 1] = this.offsets[ranges] + lengths[r];
+                ranges++;
+            }
+        }
+        for (int r = ranges + 1; r < offsets.length; r++) {
+            this.offsets[r] = this.offsets[ranges];
+        }
+    }// constructor
+
+    @Override
+    public String get(int index) {
+        return values[valueIndex(index)];
+    }// get
+
+    @Override
+    public int size() {
+        return offsets[offsets.length - 1];
+    }// size
+
+    /**
+     * returns the position in the values of the candidate at the given index.
+     * 
+     * @param index the index of the candidate in this list
+     * @return the position of the candidate in the values.
+     */
+    int valueIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String
+                    .format("CandidateView.valueIndex: index %d is out of bounds for %d candidates", index, size()));
+        }
+
+        // the range with the last offset that is at most the index
+        int range = Arrays.binarySearch(offsets, index);
+        if (range < 0) {
+            range = -range - 2;
+        }
+        return starts[range] + index - offsets[range];
+    }// valueIndex
+
+}// class
@@ -15,12 +15,17 @@
  */
 package io.github.andrewdolge.artifactgenerator.components.descriptors;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.github.andrewdolge.artifactgenerator.Description;
 
@@ -31,61 +36,427 @@ import io.github.andrewdolge.artifactgenerator.Description;
  */
 public class CustomDescriptor implements IArtifactDescriptor {
 
+    // the largest selection that is made into a reused array of positions
+    private static final int MAX_SCRATCH_SIZE = 1 << 16;
+
+    // each thread's array of selected positions, reused for every selection
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[16]);
+    // each thread's array of the candidates that constraints allow
+    private static final ThreadLocal<int[]> ALLOWED = ThreadLocal.withInitial(() -> new int[16]);
+
+    // the most constraints a descriptor can have, one per bit of a mask
+    static final int MAX_CONSTRAINTS = Long.SIZE;
+
+    private static final String[] NO_DATA = new String[0];
+
     private String category;
-    private List<String> data;
+    private String[] data;
 
     private String dependentCategory;
-    private Map<String, List<String>> dependentData;
+    private DependentDataTable dependentData;
 
     private ISelectionStrategy<String> selector;
 
+    // selects from the independent data only, such as a weighted selector.
+    private ISelectionStrategy<String> independentSelector;
+
+    private List<DescriptorConstraint> constraints;
+    private List<String> constraintCategories;
+    // for each constraint, the position of its trigger category in
+    // constraintCategories
+    private int[] constraintPositions;
+    // for each item of the data and of the dependent values, the mask of the
+    // constraints that exclude it, or null if there are no constraints
+    private long[] dataExcludedBy;
+    private long[] valuesExcludedBy;
+    // for each mask of triggered constraints, the data they allow
+    private final Map<Long, Restriction> restrictions = new ConcurrentHashMap<Long, Restriction>();
+
+    // all of the independent and dependent data
+    private Set<String> possibleParts;
+
     private CustomDescriptor(CustomDescriptorBuilder builder) {
         this.category = builder.getCategory();
-        this.data = builder.getData() != null ? List.copyOf(builder.getData()) : null;
+        this.data = builder.getData() != null ? builder.getData().toArray(NO_DATA) : null;
         this.dependentCategory = builder.getDependentCategory();
-        this.dependentData = builder.getDependentData() != null ? Map.copyOf(builder.getDependentData()) : null;
+
+        if (builder.getDependentData() != null) {
+            this.dependentData = new DependentDataTable(builder.getDependentData());
+        }
         this.selector = builder.getSelector();
+        this.independentSelector = builder.getIndependentSelector() != null ? builder.getIndependentSelector()
+                : this.selector;
+
+        this.constraints = List.copyOf(builder.getConstraints());
+        Set<String> whenCategories = new LinkedHashSet<String>();
+        for (DescriptorConstraint constraint : this.constraints) {
+            whenCategories.add(constraint.getWhenCategory());
+        }
+        this.constraintCategories = List.copyOf(whenCategories);
+        this.constraintPositions = this.constraints.stream()
+                .mapToInt(constraint -> constraintCategories.indexOf(constraint.getWhenCategory())).toArray();
+        if (!this.constraints.isEmpty()) {
+            this.dataExcludedBy = this.data != null ? excludedBy(this.data) : null;
+            this.valuesExcludedBy = this.dependentData != null ? excludedBy(this.dependentData.getValues()) : null;
+        }
 
+        Set<String> parts = new LinkedHashSet<String>();
+        if (this.data != null) {
+            parts.addAll(Arrays.asList(this.data));
+        }
+        if (this.dependentData != null) {
+            parts.addAll(Arrays.asList(this.dependentData.getValues()));
+        }
+        this.possibleParts = Collections.unmodifiableSet(parts);
     }
 
     @Override
     public Description getDescription() {
+        return getDescription(RandomSources.threadLocal());
+    }// getDescription
+
+    @Override
+    public Description getDescription(IRandomSource random) {
         if (data != null) {
-            return new Description(this.category, this.selector.select(data));
+            return select(data, this.independentSelector, random);
         } else {
             return null;
         }
     }// getDescription
 
+    @Override
+    public Description[] getDescriptions(IRandomSource[] randoms) {
+        Description[] descriptions = new Description[randoms.length];
+
+        if (data != null) {
+            // the data and strategy are the same for every artifact, so only size the
+            // selection once
+            int max = this.independentSelector.maxSelections(data.length);
+            for (int i = 0; i < randoms.length; i++) {
+                descriptions[i] = select(data, this.independentSelector, max, randoms[i]);
+            }
+        }
+        return descriptions;
+    }// getDescriptions
+
     @Override
     public Description getDescription(List<Description> descriptions) {
+        return getDescription(descriptions, RandomSources.threadLocal());
+    }// getDescription(dependents)
+
+    @Override
+    public Description getDescription(List<Description> descriptions, IRandomSource random) {
         /**
          * there must be: a not null list of descriptions exactly one description a
          * description that is not null whose category is not null and matches our
          * dependent category and whose parts is not null or empty
          */
-        if (descriptions != null && descriptions.size() == 1 && descriptions.get(0) != null
-                && descriptions.get(0).getCategory() != null
-                && descriptions.get(0).getCategory().equals(dependentCategory) && descriptions.get(0).getParts() != null
-                && !descriptions.get(0).getParts().isEmpty()) {
-
-            List<String> toSelect = new LinkedList<String>();
-
-            // for each part, check to see if it is in the hashmap of dependent data
-            // add that data to the list to select from
-            for (String key : descriptions.get(0).getParts()) {
-                if (this.dependentData.get(key) != null) {
-                    toSelect.addAll(this.dependentData.get(key));
-                } // if
-            } // for
-
-            return new Description(this.category, selector.select(toSelect));
+        if (hasDependentDescription(descriptions)) {
+            List<String> keys = descriptions.get(0).getParts();
+            if (keys.size() == 1) {
+                // the common case of a single key selects straight from its bucket
+                int bucket = this.dependentData.find(keys.get(0));
+                if (bucket < 0) {
+                    return select(NO_DATA, selector, random);
+                }
+                return select(this.dependentData.getValues(), this.dependentData.start(bucket),
+                        this.dependentData.length(bucket), selector, random);
+            }
+            return select(getDependentCandidates(keys), selector, random);
         } else {
             // default value if null checks fail
-            return getDescription();
+            return getDescription(random);
         } // else
     }// getDescription(dependents)
 
+    @Override
+    public Description getDescription(List<Description> dependents, List<Description> constraints,
+            IRandomSource random) {
+        long triggered = getTriggered(constraints);
+        if (triggered == 0) {
+            return getDescription(dependents, random);
+        }
+
+        if (hasDependentDescription(dependents)) {
+            CandidateView candidates = getDependentCandidates(dependents.get(0).getParts());
+
+            // the positions in the view of the candidates that are allowed
+            int[] allowed = getAllowed(candidates.size());
+            int count = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                if ((valuesExcludedBy[candidates.valueIndex(i)] & triggered) == 0) {
+                    allowed[count++] = i;
+                }
+            }
+            if (count == 0) {
+                return new Description(this.category);
+            }
+            return selectAllowed(candidates, allowed, count,
+                    selector.restrictedTo(candidates.size(), allowed, count), random);
+        } else if (data != null) {
+            // the data allowed by each set of constraints is worked out once, keeping
+            // the weights of a weighted selector
+            Restriction restriction = restrictions.computeIfAbsent(triggered, this::restrictData);
+            return selectAllowed(Arrays.asList(data), restriction.allowed, restriction.allowed.length,
+                    restriction.strategy, random);
+        } else {
+            return null;
+        }
+    }// getDescription(constraints)
+
+    /**
+     * selects from the allowed candidates with a strategy restricted to them, and
+     * makes a description of the selection. If none of the candidates is allowed,
+     * the description is empty.
+     * 
+     * @param candidates the candidates, which are either the data or a view of
+     *                   the dependent values
+     * @param allowed    the positions of the allowed candidates
+     * @param count      the number of allowed positions
+     * @param strategy   the strategy restricted to the allowed candidates
+     * @param random     the source to draw from
+     * @return the description.
+     */
+    private Description selectAllowed(List<String> candidates, int[] allowed, int count,
+            ISelectionStrategy<String> strategy, IRandomSource random) {
+        if (count == 0) {
+            return new Description(this.category);
+        }
+
+        int max = strategy.maxSelections(count);
+        if (max < 0 || max > MAX_SCRATCH_SIZE) {
+            // the strategy can only select items, so give it the allowed items
+            List<String> items = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(candidates.get(allowed[i]));
+            }
+            return new Description(this.category, strategy.select(Collections.unmodifiableList(items), random));
+        }
+
+        // turn the positions among the allowed candidates into positions in the data
+        // or the shared values
+        int[] scratch = getScratch(max);
+        int selected = strategy.selectIndices(count, random, scratch);
+        if (candidates instanceof CandidateView) {
+            CandidateView view = (CandidateView) candidates;
+            for (int i = 0; i < selected; i++) {
+                scratch[i] = view.valueIndex(allowed[scratch[i]]);
+            }
+            return new Description(this.category, this.dependentData.getValues(), scratch, selected);
+        }
+        for (int i = 0; i < selected; i++) {
+            scratch[i] = allowed[scratch[i]];
+        }
+        return new Description(this.category, this.data, scratch, selected);
+    }// selectAllowed
+
+    /**
+     * works out which of the independent data the given constraints allow, and
+     * restricts the independent selector to it.
+     */
+    private Restriction restrictData(long triggered) {
+        int[] allowed = new int[data.length];
+        int count = 0;
+        for (int i = 0; i < data.length; i++) {
+            if ((dataExcludedBy[i] & triggered) == 0) {
+                allowed[count++] = i;
+            }
+        }
+        allowed = Arrays.copyOf(allowed, count);
+        return new Restriction(allowed, this.independentSelector.restrictedTo(data.length, allowed, count));
+    }// restrictData
+
+    /**
+     * returns, for each of the given values, the mask of the constraints that
+     * exclude it.
+     */
+    private long[] excludedBy(String[] values) {
+        long[] masks = new long[values.length];
+        for (int c = 0; c < constraints.size(); c++) {
+            Set<String> excluded = constraints.get(c).getExcluded();
+            for (int i = 0; i < values.length; i++) {
+                if (excluded.contains(values[i])) {
+                    masks[i] |= 1L << c;
+                }
+            }
+        }
+        return masks;
+    }// excludedBy
+
+    /**
+     * determines whether the dependent descriptions are the one non-empty
+     * description of the dependent category that this descriptor selects
+     * dependent data with.
+     */
+    private boolean hasDependentDescription(List<Description> descriptions) {
+        return descriptions != null && descriptions.size() == 1 && descriptions.get(0) != null
+                && descriptions.get(0).getCategory() != null
+                && descriptions.get(0).getCategory().equals(dependentCategory) && !descriptions.get(0).isEmpty();
+    }// hasDependentDescription
+
+    /**
+     * returns a view of the dependent data of every key, in order, without
+     * copying the data.
+     */
+    private CandidateView getDependentCandidates(List<String> keys) {
+        int[] starts = new int[keys.size()];
+        int[] lengths = new int[keys.size()];
+        int count = 0;
+
+        // for each part, check to see if it is in the table of dependent data
+        // add that data to the candidates to select from
+        for (String key : keys) {
+            int bucket = this.dependentData.find(key);
+            if (bucket >= 0) {
+                starts[count] = this.dependentData.start(bucket);
+                lengths[count] = this.dependentData.length(bucket);
+                count++;
+            } // if
+        } // for
+        return new CandidateView(this.dependentData.getValues(), starts, lengths, count);
+    }// getDependentCandidates
+
+    /**
+     * returns the mask of the constraints that the descriptions of the constraint
+     * categories trigger.
+     */
+    private long getTriggered(List<Description> descriptions) {
+        if (descriptions == null || constraints.isEmpty()) {
+            return 0;
+        }
+
+        long triggered = 0;
+        for (int i = 0; i < constraints.size(); i++) {
+            if (constraints.get(i).isTriggeredBy(descriptions.get(constraintPositions[i]))) {
+                triggered |= 1L << i;
+            }
+        }
+        return triggered;
+    }// getTriggered
+
+    /**
+     * selects from the given data with the strategy, and makes a description of
+     * the selection. If the strategy can select positions, only the selected
+     * strings are copied.
+     */
+    private Description select(String[] toSelect, ISelectionStrategy<String> strategy, IRandomSource random) {
+        return select(toSelect, strategy, strategy.maxSelections(toSelect.length), random);
+    }// select
+
+    /**
+     * selects from a view of the dependent data with the strategy, and makes a
+     * description of the selection.
+     */
+    private Description select(CandidateView candidates, ISelectionStrategy<String> strategy,
+            IRandomSource random) {
+        int max = strategy.maxSelections(candidates.size());
+        if (max < 0 || max > MAX_SCRATCH_SIZE) {
+            // the strategy can only select items, and the view is already read-only
+            return new Description(this.category, strategy.select(candidates, random));
+        }
+
+        // turn the positions in the view into positions in the shared values
+        int[] scratch = getScratch(max);
+        int count = strategy.selectIndices(candidates.size(), random, scratch);
+        for (int i = 0; i < count; i++) {
+            scratch[i] = candidates.valueIndex(scratch[i]);
+        }
+        return new Description(this.category, this.dependentData.getValues(), scratch, count);
+    }// select
+
+    /**
+     * selects from the given data with the strategy, given the strategy's
+     * {@link ISelectionStrategy#maxSelections(int)} for the data.
+     */
+    private Description select(String[] toSelect, ISelectionStrategy<String> strategy, int max,
+            IRandomSource random) {
+        return select(toSelect, 0, toSelect.length, strategy, max, random);
+    }// select
+
+    /**
+     * selects from a range of the given data with the strategy.
+     */
+    private Description select(String[] values, int start, int length, ISelectionStrategy<String> strategy,
+            IRandomSource random) {
+        return select(values, start, length, strategy, strategy.maxSelections(length), random);
+    }// select
+
+    /**
+     * selects from a range of the given data with the strategy, given the
+     * strategy's {@link ISelectionStrategy#maxSelections(int)} for the range.
+     */
+    private Description select(String[] values, int start, int length, ISelectionStrategy<String> strategy,
+            int max, IRandomSource random) {
+        if (max < 0 || max > MAX_SCRATCH_SIZE) {
+            // the strategy can only select items, so give it a list view of the data
+            List<String> view = Arrays.asList(values).subList(start, start + length);
+            return new Description(this.category, strategy.select(Collections.unmodifiableList(view), random));
+        }
+
+        int[] scratch = getScratch(max);
+        int count = strategy.selectIndices(length, random, scratch);
+        if (start != 0) {
+            for (int i = 0; i < count; i++) {
+                scratch[i] += start;
+            }
+        }
+        return new Description(this.category, values, scratch, count);
+    }// select
+
+    /**
+     * returns this thread's array of positions, with room for at least the given
+     * number of positions.
+     */
+    private static int[] getScratch(int max) {
+        return getArray(SCRATCH, max);
+    }// getScratch
+
+    /**
+     * returns this thread's array of allowed candidates, with room for at least
+     * the given number of candidates.
+     */
+    private static int[] getAllowed(int size) {
+        return getArray(ALLOWED, size);
+    }// getAllowed
+
+    /**
+     * returns the thread's array, grown to at least the given length.
+     */
+    private static int[] getArray(ThreadLocal<int[]> arrays, int length) {
+        int[] array = arrays.get();
+        if (array.length < length) {
+            array = new int[Math.max(length, array.length * 2)];
+            arrays.set(array);
+        }
+        return array;
+    }// getArray
+
+    /**
+     * The independent data that a set of triggered constraints allows, and the
+     * independent selector restricted to it.
+     */
+    private static final class Restriction {
+
+        private final int[] allowed;
+        private final ISelectionStrategy<String> strategy;
+
+        private Restriction(int[] allowed, ISelectionStrategy<String> strategy) {
+            this.allowed = allowed;
+            this.strategy = strategy;
+        }
+    }// inner class
+
+    @Override
+    public boolean isConstant() {
+        return data != null && !isDependent() && constraints.isEmpty()
+                && this.independentSelector.isConstant(data.length);
+    }// isConstant
+
+    @Override
+    public String getCategory() {
+        return this.category;
+    }
+
     @Override
     public List<String> getDependentCategories() {
         if (this.dependentCategory != null) {
@@ -95,6 +466,16 @@ public class CustomDescriptor implements IArtifactDescriptor {
         }
     }
 
+    @Override
+    public Set<String> getPossibleParts() {
+        return this.possibleParts;
+    }
+
+    @Override
+    public List<String> getConstraintCategories() {
+        return this.constraintCategories;
+    }
+
     public static class CustomDescriptorBuilder implements DescriptorBuilder {
 
         private String category;
@@ -104,9 +485,13 @@ public class CustomDescriptor implements IArtifactDescriptor {
         private HashMap<String, List<String>> dependentData;
 
         private ISelectionStrategy<String> selector;
+        private ISelectionStrategy<String> independentSelector;
+
+        private List<DescriptorConstraint> constraints;
 
         public CustomDescriptorBuilder() {
             selector = ISelectionStrategy.oneRandomSelection();
+            constraints = new LinkedList<DescriptorConstraint>();
         }
 
         /**
@@ -158,6 +543,53 @@ public class CustomDescriptor implements IArtifactDescriptor {
             return this;
         }
 
+        /**
+         * Sets the selection strategy used for the independent data only. The
+         * strategy set by {@link #withSelectionStrategy(ISelectionStrategy)} is
+         * still used for the dependent data.
+         * 
+         * This is for strategies that only work with one list, such as
+         * {@link ISelectionStrategy#weightedSelection(double...)}.
+         * 
+         * @param selector the selection strategy for the independent data, or null
+         *                 to use the selection strategy.
+         * @return the builder, for method chaining.
+         */
+        public CustomDescriptorBuilder withIndependentSelectionStrategy(ISelectionStrategy<String> selector) {
+            this.independentSelector = selector;
+            return this;
+        }
+
+        /**
+         * Adds a constraint: once the artifact's description of the given category
+         * has one of the given parts, the descriptor does not select any of the
+         * excluded data. The descriptor is evaluated after the category, when the
+         * category is provided.
+         * 
+         * The remaining data is selected with the same strategy, restricted to it:
+         * a weighted strategy keeps the weights of the remaining data, and a
+         * strategy without replacement selects at most the remaining data. If a
+         * constraint excludes all of the data, the description is empty. A
+         * descriptor can have at most 64 constraints.
+         * 
+         * @param whenCategory the category that triggers the constraint
+         * @param is           the parts of the category that trigger the
+         *                     constraint, or null or empty for any part
+         * @param excluded     the data that cannot be selected once the constraint
+         *                     is triggered
+         * @return the builder, for method chaining.
+         */
+        public CustomDescriptorBuilder withConstraint(String whenCategory, Collection<String> is,
+                Collection<String> excluded) {
+            if (this.constraints.size() == MAX_CONSTRAINTS) {
+                throw new IllegalArgumentException(String.format(
+                        "CustomDescriptorBuilder.withConstraint: there can be at most %d constraints",
+                        MAX_CONSTRAINTS));
+            }
+            this.constraints.add(new DescriptorConstraint(whenCategory, is, excluded));
+            return this;
+        }
+
         private String getCategory() {
             return category;
         }
@@ -174,16 +606,26 @@ public class CustomDescriptor implements IArtifactDescriptor {
             return selector;
         }
 
+        private ISelectionStrategy<String> getIndependentSelector() {
+            return independentSelector;
+        }
+
         private String getDependentCategory() {
             return dependentCategory;
         }
 
+        private List<DescriptorConstraint> getConstraints() {
+            return constraints;
+        }
+
         @Override
         public void reset() {
             this.category = null;
             this.data = null;
             this.dependentCategory = null;
             this.selector = ISelectionStrategy.oneRandomSelection();
+            this.independentSelector = null;
+            this.constraints = new LinkedList<DescriptorConstraint>();
 
         }
     }// inner builder class
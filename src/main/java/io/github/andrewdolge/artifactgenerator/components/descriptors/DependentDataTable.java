@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependent data of a descriptor, compiled into flat arrays.
+ * 
+ * The data of every key is stored one bucket after another in a single array
+ * of values, and each bucket is found through an open-addressing table of the
+ * keys, with linear probing. Looking a key up uses the string's cached hash
+ * code, and the table holds no entry objects, so a table with hundreds of
+ * thousands of keys costs a few arrays rather than a map entry and a list per
+ * key.
+ */
+final class DependentDataTable {
+
+    private static final int NOT_FOUND = -1;
+
+    // the keys, at the slot their hash code probes to. Empty slots are null.
+    private final String[] keys;
+    // the bucket of the key in each slot
+    private final int[] slotBuckets;
+
+    // the values of every bucket, one bucket after another
+    private final String[] values;
+    // offsets[b] is the position of the first value of bucket b, and the last
+    // offset is the number of values.
+    private final int[] offsets;
+
+    /**
+     * compiles the given dependent data.
+     * 
+     * @param data the data of each key
+     */
+    DependentDataTable(Map<String, List<String>> data) {
+        // keep the table at most half full, so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(1, data.size()) * 2 - 1) << 1;
+        this.keys = new String[capacity];
+        this.slotBuckets = new int[capacity];
+        this.offsets = new int[data.size() + 1];
+
+        int total = 0;
+        for (List<String> bucket : data.values()) {
+            total += bucket.size();
+        }
+        this.values = new String[total];
+
+        int bucket = 0;
+        for (Map.Entry<String, List<String>> entry : data.entrySet()) {
+            int slot = probe(entry.getKey());
+            keys[slot] = entry.getKey();
+            slotBuckets[slot] = bucket;
+
+            List<String> bucketValues = entry.getValue();
+            offsets[bucket + 1] = offsets[bucket] + bucketValues.size();
+            for (int i = 0; i < bucketValues.size(); i++) {
+                values[offsets[bucket] + i] = bucketValues.get(i);
+            }
+            bucket++;
+        } // for every key
+    }// constructor
+
+    /**
+     * returns the slot of the key, or the empty slot it would go in.
+     */
+    private int probe(String key) {
+        int mask = keys.length - 1;
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }// probe
+
+    /**
+     * finds the bucket of the given key.
+     * 
+     * @param key the key to look up
+     * @return the bucket, or -1 if the key has no data.
+     */
+    int find(String key) {
+        if (key == null) {
+            return NOT_FOUND;
+        }
+        int slot = probe(key);
+        return keys[slot] != null ? slotBuckets[slot] : NOT_FOUND;
+    }// find
+
+    /**
+     * returns the position of the first value of the bucket in
+     * {@link #getValues()}.
+     */
+    int start(int bucket) {
+        return offsets[bucket];
+    }// start
+
+    /**
+     * returns the number of values of the bucket.
+     */
+    int length(int bucket) {
+        return offsets[bucket + 1] - offsets[bucket];
+    }// length
+
+    /**
+     * returns the values of every bucket. The array is shared, and must not be
+     * changed.
+     * 
+     * @return the values.
+     */
+    String[] getValues() {
+        return values;
+    }// getValues
+
+}// class
@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import io.github.andrewdolge.artifactgenerator.Description;
+
+/**
+ * A rule that keeps a descriptor from selecting some of its data when another
+ * category of the artifact has certain parts, such as "Material must not be
+ * Wood when Type is Flame".
+ * 
+ * The constraint is checked while the artifact is generated, so the descriptor
+ * selects only from the data that is still allowed, and no artifact has to be
+ * thrown away.
+ */
+public final class DescriptorConstraint {
+
+    private final String whenCategory;
+    private final Set<String> is;
+    private final Set<String> excluded;
+
+    /**
+     * Creates a new constraint.
+     * 
+     * @param whenCategory the category that triggers the constraint
+     * @param is           the parts of the category that trigger the constraint.
+     *                     If null or empty, any description of the category
+     *                     triggers it.
+     * @param excluded     the data that cannot be selected once the constraint
+     *                     is triggered
+     */
+    public DescriptorConstraint(String whenCategory, Collection<String> is, Collection<String> excluded) {
+        if (whenCategory == null) {
+            throw new IllegalArgumentException("DescriptorConstraint: whenCategory is null");
+        }
+        if (excluded == null) {
+            throw new IllegalArgumentException("DescriptorConstraint: excluded is null");
+        }
+
+        this.whenCategory = whenCategory;
+        this.is = is != null ? Set.copyOf(is) : Collections.emptySet();
+        this.excluded = Set.copyOf(excluded);
+    }// constructor
+
+    /**
+     * determines whether the given description of the trigger category triggers
+     * this constraint.
+     * 
+     * @param description the artifact's description of the trigger category, or
+     *                    null if it has none
+     * @return true, if the description has a part this constraint is triggered
+     *         by. false otherwise.
+     */
+    public boolean isTriggeredBy(Description description) {
+        if (description == null || description.isEmpty()) {
+            return false;
+        }
+        if (is.isEmpty()) {
+            return true;
+        }
+        for (String part : description.getParts()) {
+            if (is.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }// isTriggeredBy
+
+    public String getWhenCategory() {
+        return whenCategory;
+    }
+
+    public Set<String> getIs() {
+        return is;
+    }
+
+    public Set<String> getExcluded() {
+        return excluded;
+    }
+
+    @Override
+    public String toString() {
+        return "DescriptorConstraint [whenCategory=" + whenCategory + ", is=" + is + ", excluded=" + excluded + "]";
+    }
+
+}// class
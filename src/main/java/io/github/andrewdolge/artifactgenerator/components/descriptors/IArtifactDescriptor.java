@@ -15,8 +15,13 @@
  */
 package io.github.andrewdolge.artifactgenerator.components.descriptors;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import io.github.andrewdolge.artifactgenerator.Description;
 
@@ -53,6 +58,177 @@ public interface IArtifactDescriptor {
         return getDescription();
     }
 
+    /**
+     * Gets a description as {@link #getDescription()} does, drawing any random
+     * numbers from the given source. The source is only used by the calling
+     * thread.
+     * 
+     * Descriptors that make random choices should override this method. By
+     * default, the source is ignored and {@link #getDescription()} is returned.
+     * 
+     * @param random the random source to draw from
+     * @return A description that describes that artifact, otherwise null.
+     */
+    public default Description getDescription(IRandomSource random) {
+        return getDescription();
+    }
+
+    /**
+     * Gets a description as {@link #getDescription(List)} does, drawing any random
+     * numbers from the given source.
+     * 
+     * By default, the source is ignored and {@link #getDescription(List)} is
+     * returned.
+     * 
+     * @param dependents the descriptions of the categories this descriptor depends
+     *                   on
+     * @param random     the random source to draw from
+     * @return A description that describes that artifact, otherwise null.
+     */
+    public default Description getDescription(List<Description> dependents, IRandomSource random) {
+        return getDescription(dependents);
+    }
+
+    /**
+     * Gets a description for each of a block of artifacts at once, as
+     * {@link #getDescription(IRandomSource)} does for one. Artifacts built in
+     * columns call this once per block instead of once per artifact, so
+     * descriptors can keep their data hot and do their setup only once.
+     * 
+     * By default, {@link #getDescription(IRandomSource)} is called for each
+     * artifact.
+     * 
+     * @param randoms the random source of each artifact
+     * @return the description of each artifact, in the same order. Entries may be
+     *         null.
+     */
+    public default Description[] getDescriptions(IRandomSource[] randoms) {
+        Description[] descriptions = new Description[randoms.length];
+        for (int i = 0; i < randoms.length; i++) {
+            descriptions[i] = getDescription(randoms[i]);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Gets a description for each of a block of artifacts at once, as
+     * {@link #getDescription(List, IRandomSource)} does for one.
+     * 
+     * The descriptions this descriptor depends on are given as columns: one column
+     * per category of {@link #getDependentCategories()}, in the same order, with
+     * one description per artifact.
+     * 
+     * By default, {@link #getDescription(List, IRandomSource)} is called for each
+     * artifact.
+     * 
+     * @param dependentColumns the descriptions of each dependent category, with
+     *                         one entry per artifact
+     * @param randoms          the random source of each artifact
+     * @return the description of each artifact, in the same order. Entries may be
+     *         null.
+     */
+    public default Description[] getDescriptions(List<Description[]> dependentColumns, IRandomSource[] randoms) {
+        Description[] descriptions = new Description[randoms.length];
+
+        for (int i = 0; i < randoms.length; i++) {
+            List<Description> dependents = new ArrayList<Description>(dependentColumns.size());
+            for (Description[] column : dependentColumns) {
+                dependents.add(column[i]);
+            }
+            descriptions[i] = getDescription(dependents, randoms[i]);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Asynchronously gets a description to describe an Artifact, as
+     * {@link #getDescription(IRandomSource)} does.
+     * 
+     * Descriptors that are expensive to evaluate, for example ones that read files,
+     * can override this method to do their work without blocking a thread. By
+     * default, {@link #getDescription(IRandomSource)} is run on the given
+     * executor.
+     * 
+     * @param random   the random source to draw from
+     * @param executor the executor to run any work on
+     * @return a stage that completes with the description, or null.
+     */
+    public default CompletionStage<Description> getDescriptionAsync(IRandomSource random, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> getDescription(random), executor);
+    }
+
+    /**
+     * Asynchronously gets a description that is dependent on the given
+     * descriptions, as {@link #getDescription(List, IRandomSource)} does.
+     * 
+     * By default, {@link #getDescription(List, IRandomSource)} is run on the given
+     * executor.
+     * 
+     * @param dependents the descriptions of the categories this descriptor depends
+     *                   on
+     * @param random     the random source to draw from
+     * @param executor   the executor to run any work on
+     * @return a stage that completes with the description, or null.
+     */
+    public default CompletionStage<Description> getDescriptionAsync(List<Description> dependents,
+            IRandomSource random, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> getDescription(dependents, random), executor);
+    }
+
+    /**
+     * returns a description that respects the descriptions of the constraint
+     * categories: the selection is made only from the data those descriptions
+     * allow, instead of being removed after it is made.
+     * 
+     * By default, the constraints are ignored, and
+     * {@link #getDescription(List, IRandomSource)} or
+     * {@link #getDescription(IRandomSource)} is returned.
+     * 
+     * @param dependents  the descriptions of the dependent categories, or null for
+     *                    an independent descriptor
+     * @param constraints the description of each category returned by
+     *                    {@link #getConstraintCategories()}, in the same order. A
+     *                    category that the artifact does not have is null.
+     * @param random      the source of random numbers for the selection
+     * @return the description.
+     */
+    public default Description getDescription(List<Description> dependents, List<Description> constraints,
+            IRandomSource random) {
+        return dependents != null ? getDescription(dependents, random) : getDescription(random);
+    }
+
+    /**
+     * determines whether this descriptor always makes the same description, such
+     * as a descriptor that always selects all of its data. A template evaluates a
+     * constant, independent descriptor only once, and shares the description
+     * between all of its artifacts, so the description must not change.
+     * 
+     * By default, descriptors are not constant.
+     * 
+     * @return true, if {@link #getDescription(IRandomSource)} always returns an
+     *         equal description. false otherwise.
+     */
+    public default boolean isConstant() {
+        return false;
+    }// isConstant
+
+    /**
+     * returns the category of the descriptions this ArtifactDescriptor produces.
+     * 
+     * The ArtifactBuilder uses this to order descriptors, so that a dependent
+     * descriptor is evaluated after the descriptors that provide its categories.
+     * A descriptor that returns null here could provide any category, so it counts
+     * as a provider of every category. Descriptors evaluated after it that depend
+     * on, or are constrained by, a category are given its description if it has
+     * that category, and a projection never leaves it out.
+     * 
+     * @return the category of this descriptor's descriptions, or null if it is not
+     *         known. null by default.
+     */
+    public default String getCategory() {
+        return null;
+    }// getCategory
+
     /**
      * returns a list of categories that this ArtifactDescriptor needs in order to
      * produce a selection.
@@ -90,5 +266,37 @@ public interface IArtifactDescriptor {
         return !getDependentCategories().isEmpty();
     }// isDependent
 
+    /**
+     * returns every part that this descriptor's descriptions can have, such as
+     * all of its data.
+     * 
+     * A template gives each of these parts an ordinal, so that its artifacts can
+     * store them compactly. Parts that are not reported still work, but are
+     * stored with each artifact that has them.
+     * 
+     * @return the possible parts of the descriptions. An empty set by default.
+     */
+    public default Set<String> getPossibleParts() {
+        return Collections.emptySet();
+    }// getPossibleParts
+
+    /**
+     * returns the categories whose descriptions constrain the selection of this
+     * descriptor, such as a descriptor that never selects "Wood" when the "Type"
+     * is "Flame".
+     * 
+     * Unlike the dependent categories, the constraint categories only order the
+     * descriptors: a descriptor is evaluated after the descriptors that provide
+     * its constraint categories, when there are any, but it does not need them to
+     * be present. Its descriptions are made with
+     * {@link #getDescription(List, List, IRandomSource)}.
+     * 
+     * @return a list of categories that constrain this descriptor. An empty list
+     *         by default.
+     */
+    public default List<String> getConstraintCategories() {
+        return Collections.emptyList();
+    }// getConstraintCategories
+
 
 }// interface
\ No newline at end of file
@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+/**
+ * A source of random numbers for selection strategies.
+ * 
+ * An IRandomSource does not need to be thread safe. Each thread that builds
+ * artifacts should use its own source, which it can get with {@link #split()},
+ * so that threads never contend for the same generator.
+ * 
+ * Implementations are provided by {@link RandomSources}.
+ * 
+ */
+public interface IRandomSource {
+
+    /**
+     * returns a random integer between zero (inclusive) and the bound
+     * (exclusive), with every value equally likely.
+     * 
+     * @param bound the upper bound. Must be positive.
+     * @return a random integer in [0, bound).
+     * @throws IllegalArgumentException if the bound is not positive.
+     */
+    public int nextInt(int bound);
+
+    /**
+     * returns a random double between zero (inclusive) and one (exclusive).
+     * 
+     * @return a random double in [0, 1).
+     */
+    public double nextDouble();
+
+    /**
+     * returns a random long, with every value equally likely.
+     * 
+     * @return a random long.
+     */
+    public long nextLong();
+
+    /**
+     * returns a new source whose numbers are independent of this one, for use on
+     * another thread. A seeded source splits deterministically, so the same seed
+     * always gives the same split sources, in the same order.
+     * 
+     * @return a new, independent source.
+     */
+    public IRandomSource split();
+
+    /**
+     * returns a new source of the same kind as this one, seeded with the given
+     * seed. Two sources made with the same seed give the same numbers.
+     * 
+     * @param seed the seed
+     * @return a new, seeded source.
+     */
+    public IRandomSource withSeed(long seed);
+
+    /**
+     * determines whether this source deals its bounded integers from the decks of
+     * a quota category, rather than drawing them. A selection strategy with its
+     * own source still selects from a stratified source, so the quota holds.
+     * 
+     * By default, sources are not stratified.
+     * 
+     * @return true, if this source deals from quota decks. false otherwise.
+     */
+    public default boolean isStratified() {
+        return false;
+    }
+
+}// interface
@@ -15,9 +15,7 @@
  */
 package io.github.andrewdolge.artifactgenerator.components.descriptors;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * An ISelector instance should be able to select any number of items from a
@@ -26,16 +24,106 @@ import java.util.Random;
  * An ISelectionStrategy should decide both which elements to select from the
  * list, as well as how many to select.
  * 
+ * Strategies can also select positions instead of items, with
+ * {@link #selectIndices(int, IRandomSource, int[])}, which lets descriptors keep
+ * their data in arrays and select from it without creating any lists. The
+ * strategies provided here all support this.
+ * 
  */
 public interface ISelectionStrategy<T> {
 
     /**
-     * Selects and returns any number of items from the given list.
+     * Selects and returns any number of items from the given list, drawing from
+     * the given random source.
+     * 
+     * @param list   the original list to select from
+     * @param random the random source to draw from
+     * @return any number of items from the given list.
+     */
+    public List<T> select(List<T> list, IRandomSource random);
+
+    /**
+     * Selects and returns any number of items from the given list, drawing from
+     * {@link RandomSources#threadLocal()}.
      * 
      * @param list the original list to select from
      * @return any number of items from the given list.
      */
-    public List<T> select(List<T> list);
+    public default List<T> select(List<T> list) {
+        return select(list, RandomSources.threadLocal());
+    }
+
+    /**
+     * returns the most positions {@link #selectIndices(int, IRandomSource, int[])}
+     * can select from a list of the given size, so callers know how large an array
+     * to give it.
+     * 
+     * By default, this strategy cannot select positions, and -1 is returned.
+     * 
+     * @param size the size of the list
+     * @return the most positions that can be selected, or -1 if this strategy can
+     *         only select items with {@link #select(List, IRandomSource)}.
+     * @throws IllegalArgumentException if the strategy cannot select from a list
+     *                                  of this size.
+     */
+    public default int maxSelections(int size) {
+        return -1;
+    }
+
+    /**
+     * Selects positions of a list of the given size, as
+     * {@link #select(List, IRandomSource)} would select the items at those
+     * positions, and writes them to the given array.
+     * 
+     * Only strategies whose {@link #maxSelections(int)} is not negative support
+     * this.
+     * 
+     * @param size   the size of the list
+     * @param random the random source to draw from
+     * @param out    the array to write the selected positions to, from the start.
+     *               Must be at least {@link #maxSelections(int)} long.
+     * @return the number of positions written.
+     * @throws UnsupportedOperationException if this strategy cannot select
+     *                                       positions.
+     */
+    public default int selectIndices(int size, IRandomSource random, int[] out) {
+        throw new UnsupportedOperationException("ISelectionStrategy.selectIndices: this strategy only selects items");
+    }
+
+    /**
+     * determines whether this strategy always selects the same items, in the same
+     * order, from a list of the given size. Descriptors whose selections cannot
+     * vary only need to be evaluated once.
+     * 
+     * By default, selections are assumed to vary.
+     * 
+     * @param size the size of the list
+     * @return true, if every selection from a list of this size is the same. false
+     *         otherwise.
+     */
+    public default boolean isConstant(int size) {
+        return false;
+    }
+
+    /**
+     * returns a strategy that selects from only some of the items of a list of
+     * the given size, such as the items a constraint allows. The returned strategy
+     * is given the list of just the allowed items, in order.
+     * 
+     * A strategy that selects a fixed number of items without replacement selects
+     * at most the allowed items, and a weighted strategy keeps the weights of the
+     * allowed items. By default, this strategy is returned unchanged, and selects
+     * from the allowed items as it would from any list.
+     * 
+     * @param size    the size of the whole list
+     * @param allowed the positions of the allowed items in the whole list, in
+     *                ascending order
+     * @param count   the number of allowed positions
+     * @return a strategy for the list of the allowed items.
+     */
+    public default ISelectionStrategy<T> restrictedTo(int size, int[] allowed, int count) {
+        return this;
+    }
 
     /**
      * A Selector that selects exactly one item from the list at random.
@@ -45,21 +133,30 @@ public interface ISelectionStrategy<T> {
      */
     public static <T> ISelectionStrategy<T> oneRandomSelection() {
 
-        // return a lambda expression (an anonymous function [a function without name])
-        // that implements the ISelectionStrategy interface.
-        return list -> {
+        return new IndexSelectionStrategy<T>() {
 
-            // create a new list to return
-            List<T> selected = new LinkedList<T>();
+            @Override
+            public int maxSelections(int size) {
+                return Math.min(size, 1);
+            }
 
-            // if the input list is empty, return an empty list.
-            if (list.isEmpty()) {
-                return selected;
+            @Override
+            public boolean isConstant(int size) {
+                return size <= 1;
             }
 
-            // add to the new list a random element from the input list and return it.
-            selected.add(list.get(new Random().nextInt(list.size())));
-            return selected;
+            @Override
+            int count(int size, IRandomSource random) {
+                // if the input list is empty, select nothing.
+                return Math.min(size, 1);
+            }
+
+            @Override
+            void fill(int size, int count, IRandomSource random, int[] out) {
+                if (count > 0) {
+                    out[0] = random.nextInt(size);
+                }
+            }
         };
     }// static OneRandomSelection
 
@@ -86,29 +183,34 @@ public interface ISelectionStrategy<T> {
     public static <T> ISelectionStrategy<T> anyMultiplicativeProbabilityRandomSelection(double initialProbability,
             double multipler) {
 
-        return list -> {
-
-            // create a new list to return
-            List<T> selected = new LinkedList<T>();
+        // the chance of selecting each number of items, computed once
+        SelectionCountTable counts = new SelectionCountTable(0, Integer.MAX_VALUE, initialProbability, multipler);
 
-            double currentProbability = initialProbability;
+        return new IndexSelectionStrategy<T>() {
 
-            // should this function select another item?
-            while (selected.size() < list.size() && currentProbability > Math.random()) {
-                T toSelect;
+            @Override
+            public int maxSelections(int size) {
+                return size;
+            }
 
-                // while selecting, do not select an item that has already been selected.
-                do {
-                    // select a random element from the list
-                    toSelect = list.get(new Random().nextInt(list.size()));
-                } while (selected.contains(toSelect));
+            @Override
+            public boolean isConstant(int size) {
+                // the order of several items is random, even if their number is not
+                int fixed = counts.fixedCount(size);
+                return fixed == 0 || (fixed == 1 && size == 1);
+            }
 
-                // add the item and increment the probability by the multiplier
-                selected.add(toSelect);
-                currentProbability = currentProbability * multipler;
-            } // while continue selecting
+            @Override
+            int count(int size, IRandomSource random) {
+                // decide how many items to select with a single draw
+                return counts.next(random, size);
+            }
 
-            return selected;
+            @Override
+            void fill(int size, int count, IRandomSource random, int[] out) {
+                // draw positions of the list that have not been selected yet
+                fillWithoutReplacement(size, count, random, out);
+            }
         };
 
     }
@@ -131,63 +233,251 @@ public interface ISelectionStrategy<T> {
                     probability));
         }
 
-        return list -> {
+        // the chance of selecting each number of items, computed once
+        SelectionCountTable counts = new SelectionCountTable(min, max, probability, multiplier);
+
+        return new IndexSelectionStrategy<T>() {
 
-            // if the maximum amount of items possible is greater than the size of the input
-            // list, and we are selecting without replacement
-            // we could get into an infinite loop, since the selector might try to pick
-            // another item when there are no more items to select, so throw an exception.
-            if (max > list.size() && !withReplacement) {
-                throw new IllegalArgumentException(String.format(
-                        "ISelectionStrategy.CustomSelectionStrategy: max(%d) cannot be greater than list size(%d) when using 'Without Replacement.' ",
-                        max, list.size()));
+            @Override
+            public int maxSelections(int size) {
+                checkSize(size);
+                return size == 0 ? 0 : max;
             }
 
-            // create a new list to return
-            List<T> selected = new LinkedList<T>();
-            double currentProbability = probability;
+            @Override
+            public ISelectionStrategy<T> restrictedTo(int size, int[] allowed, int count) {
+                if (withReplacement || max <= count) {
+                    return this;
+                }
+                // without replacement, at most the allowed items can be selected
+                return customSelectionStrategy(Math.min(min, count), count, probability, multiplier, false);
+            }
 
-            // should this function select another item?
-            while (!(selected.size() >= max) && // have we exceeded our maximum item count? then no
-            !(!withReplacement && selected.size() == list.size()) && // have we exhausted all items to select? then no.
-            (selected.size() < min || // do we need more items to meet the minimum? then yes
-            currentProbability > Math.random() // did the probability succeed? then yes
-            )) {
-                T toSelect;
+            @Override
+            public boolean isConstant(int size) {
+                if (size == 0) {
+                    return true;
+                } else if (max > size && !withReplacement) {
+                    // every selection fails
+                    return false;
+                }
+                // several items of a longer list could be any of them, in any order
+                int fixed = counts.fixedCount(Integer.MAX_VALUE);
+                return fixed == 0 || (fixed > 0 && size == 1);
+            }
 
-                // if with replacement, select a random item from the list.
-                if (withReplacement) {
-                    toSelect = list.get(new Random().nextInt(list.size()));
+            @Override
+            int count(int size, IRandomSource random) {
+                checkSize(size);
 
-                } else { // else without replacement
-                    // while selecting, do not select an item that has already been selected.
+                // there is nothing to select from an empty list
+                if (size == 0) {
+                    return 0;
+                }
 
-                    do {
-                        // select a random element from the list
-                        toSelect = list.get(new Random().nextInt(list.size()));
-                    } while (selected.contains(toSelect));
+                // decide how many items to select with a single draw
+                return counts.next(random, withReplacement ? Integer.MAX_VALUE : size);
+            }
+
+            @Override
+            void fill(int size, int count, IRandomSource random, int[] out) {
+                // if with replacement, select random positions of the list.
+                if (withReplacement) {
+                    for (int i = 0; i < count; i++) {
+                        out[i] = random.nextInt(size);
+                    }
+                } else { // else without replacement
+                    // select positions of the list that have not been selected yet
+                    fillWithoutReplacement(size, count, random, out);
                 } // else
+            }
+
+            private void checkSize(int size) {
+                // if the maximum amount of items possible is greater than the size of the
+                // input list, and we are selecting without replacement, there are not enough
+                // items to select, so throw an exception.
+                if (max > size && !withReplacement) {
+                    throw new IllegalArgumentException(String.format(
+                            "ISelectionStrategy.CustomSelectionStrategy: max(%d) cannot be greater than list size(%d) when using 'Without Replacement.' ",
+                            max, size));
+                }
+            }
+        };
+    }
+
+    /**
+     * A Selector that selects exactly one item from the list, with a chance
+     * proportional to the item's weight.
+     * 
+     * The weights are made into an alias table once, when the strategy is created,
+     * so each selection takes constant time, no matter how many items there are.
+     * The strategy can only select from lists with one item per weight.
+     * 
+     * @param <T>     The type of the list
+     * @param weights the weight of each item of the list. Must be nonnegative, with
+     *                at least one positive weight.
+     * @return a SelectionStrategy that selects exactly one weighted item from the
+     *         given list.
+     */
+    public static <T> ISelectionStrategy<T> weightedSelection(double... weights) {
+        return customWeightedSelectionStrategy(weights, 1, 1, 1.0, 1.0);
+    }// weightedSelection
+
+    /**
+     * Selects items from the list with replacement, with a chance proportional to
+     * each item's weight. The number of items is decided as
+     * {@link #customSelectionStrategy(int, int, double, double, boolean)} decides
+     * it.
+     * 
+     * The weights are made into an alias table once, when the strategy is created,
+     * so each selection takes constant time, no matter how many items there are.
+     * The strategy can only select from lists with one item per weight.
+     * 
+     * @param <T>         The type of the list
+     * @param weights     the weight of each item of the list. Must be nonnegative,
+     *                    with at least one positive weight.
+     * @param min         the minimum number of items to select
+     * @param max         the maximum number of items to select
+     * @param probability the probability of selecting another item, once the
+     *                    minimum has been selected
+     * @param multiplier  the multiplier applied to the probability after each
+     *                    additional selection
+     * @return a weighted selection strategy.
+     */
+    public static <T> ISelectionStrategy<T> customWeightedSelectionStrategy(double[] weights, int min, int max,
+            double probability, double multiplier) {
 
-                // add the item and increment the probability by the multiplier
-                selected.add(toSelect);
+        if (min > max) {
+            throw new IllegalArgumentException(String.format(
+                    "ISelectionStrategy.customWeightedSelectionStrategy: min(%d) is greater than max(%d)", min, max));
+        } else if (min < 0) {
+            throw new IllegalArgumentException(String
+                    .format("ISelectionStrategy.customWeightedSelectionStrategy: min(%d) must be nonnegative", min));
+        } else if (probability < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "ISelectionStrategy.customWeightedSelectionStrategy: probability(%f) must be nonnegative",
+                    probability));
+        }
+
+        AliasTable table = new AliasTable(weights);
+        // kept to restrict the strategy to some of the items
+        double[] itemWeights = weights.clone();
+        SelectionCountTable counts = new SelectionCountTable(min, max, probability, multiplier);
+
+        return new IndexSelectionStrategy<T>() {
+
+            @Override
+            public int maxSelections(int size) {
+                checkSize(size);
+                return max;
+            }
+
+            @Override
+            public ISelectionStrategy<T> restrictedTo(int size, int[] allowed, int count) {
+                checkSize(size);
+                double[] allowedWeights = new double[count];
+                boolean positive = false;
+                for (int i = 0; i < count; i++) {
+                    allowedWeights[i] = itemWeights[allowed[i]];
+                    positive |= allowedWeights[i] > 0.0;
+                }
+                if (!positive) {
+                    // none of the allowed items can ever be selected
+                    return customSelectionStrategy(0, 0, 0.0, 0.0, false);
+                }
+                return customWeightedSelectionStrategy(allowedWeights, min, max, probability, multiplier);
+            }
 
-                // if we don't have enough items to satisfy the minimum, don't multiply the
-                // probability.
-                // The first selection that was determined by the random draw should use the
-                // initial probability.
-                if (selected.size() > min) {
-                    currentProbability = currentProbability * multiplier;
+            @Override
+            public boolean isConstant(int size) {
+                if (size != table.size()) {
+                    return false;
                 }
+                int fixed = counts.fixedCount(Integer.MAX_VALUE);
+                return fixed == 0 || (fixed > 0 && table.onlyIndex() >= 0);
+            }
 
-            } // while continue selecting
+            @Override
+            int count(int size, IRandomSource random) {
+                checkSize(size);
+                // decide how many items to select with a single draw
+                return counts.next(random, Integer.MAX_VALUE);
+            }
 
-            return selected;
+            @Override
+            void fill(int size, int count, IRandomSource random, int[] out) {
+                for (int i = 0; i < count; i++) {
+                    out[i] = table.next(random);
+                }
+            }
 
+            private void checkSize(int size) {
+                if (size != table.size()) {
+                    throw new IllegalArgumentException(String.format(
+                            "ISelectionStrategy.customWeightedSelectionStrategy: list size(%d) does not match the number of weights(%d)",
+                            size, table.size()));
+                }
+            }
         };
-    }
+    }// customWeightedSelectionStrategy
+
+    /**
+     * returns a selection strategy that selects with its own kind of random
+     * source, such as a xoshiro source for one component.
+     * 
+     * Each thread reseeds one generator of that kind for every selection, from
+     * the source the strategy is called with, mixed with a salt drawn once from
+     * the given source. So artifacts built from the same seed, on any thread, make
+     * the same selections, and selecting creates no sources. The thread local
+     * source cannot be seeded, so a strategy with it is not reproducible. Quota
+     * categories are still dealt from their decks.
+     * 
+     * @param <T>      The type of the list
+     * @param strategy the strategy to wrap
+     * @param source   the kind of source to select with. The salt is drawn from
+     *                 it, once.
+     * @return a selection strategy that selects with its own source.
+     */
+    public static <T> ISelectionStrategy<T> withRandomSource(ISelectionStrategy<T> strategy, IRandomSource source) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("ISelectionStrategy.withRandomSource: strategy is null");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("ISelectionStrategy.withRandomSource: source is null");
+        }
+        return new OwnSourceStrategy<T>(strategy, source);
+    }// withRandomSource
 
     public static <T> ISelectionStrategy<T> all() {
-        return list -> list;
+        return new IndexSelectionStrategy<T>() {
+
+            @Override
+            public List<T> select(List<T> list, IRandomSource random) {
+                return list;
+            }
+
+            @Override
+            public int maxSelections(int size) {
+                return size;
+            }
+
+            @Override
+            public boolean isConstant(int size) {
+                return true;
+            }
+
+            @Override
+            int count(int size, IRandomSource random) {
+                return size;
+            }
+
+            @Override
+            void fill(int size, int count, IRandomSource random, int[] out) {
+                for (int i = 0; i < count; i++) {
+                    out[i] = i;
+                }
+            }
+        };
     }
 
 }// interface
\ No newline at end of file
@@ -0,0 +1,183 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.Arrays;
+
+/**
+ * Draws distinct indices from [0, size) one at a time, without replacement.
+ * 
+ * This is a partial Fisher-Yates shuffle: each draw swaps a random remaining
+ * index to the front. Only the swapped positions are stored, so each draw takes
+ * constant time no matter how many indices have been drawn, and drawing k
+ * indices is O(k). Since indices are drawn rather than values, equal values at
+ * different positions of a list are distinct items.
+ * 
+ * Each thread has one sampler, which {@link #forSize(int)} resets for every
+ * selection, so its arrays are reused. A selection must be finished before the
+ * next one starts on the same thread.
+ */
+final class IndexSampler {
+
+    // below this size, the positions are kept in an array instead of a hash table
+    private static final int DENSE_LIMIT = 256;
+
+    // each thread's sampler
+    private static final ThreadLocal<IndexSampler> SAMPLERS = ThreadLocal.withInitial(IndexSampler::new);
+
+    private int size;
+    private int drawn;
+
+    // A slot only belongs to the current selection if its stamp is the current
+    // generation, so a reset does not have to clear anything.
+
+    // the index at each swapped position, for sizes up to DENSE_LIMIT
+    private final int[] dense = new int[DENSE_LIMIT];
+    private final int[] denseStamps = new int[DENSE_LIMIT];
+
+    // an open-addressing hash table from the swapped positions to their indices,
+    // for larger sizes
+    private int[] keys = new int[16];
+    private int[] values = new int[16];
+    private int[] stamps = new int[16];
+    private int entries;
+    private int generation;
+
+    private IndexSampler() {
+    }// constructor
+
+    /**
+     * returns this thread's sampler, reset to draw from the indices [0, size).
+     * 
+     * @param size the number of indices
+     * @return the sampler.
+     */
+    static IndexSampler forSize(int size) {
+        IndexSampler sampler = SAMPLERS.get();
+        sampler.reset(size);
+        return sampler;
+    }// forSize
+
+    private void reset(int size) {
+        this.size = size;
+        this.drawn = 0;
+        this.entries = 0;
+        if (++generation == 0) {
+            // the stamps have wrapped around, so old slots could look current
+            Arrays.fill(denseStamps, 0);
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }// reset
+
+    /**
+     * determines whether any indices are left to draw.
+     * 
+     * @return true, if fewer than size indices have been drawn.
+     */
+    boolean hasNext() {
+        return drawn < size;
+    }
+
+    /**
+     * draws an index that has not been drawn before.
+     * 
+     * @param random the random source to draw from
+     * @return a new index in [0, size).
+     * @throws IllegalStateException if every index has been drawn.
+     */
+    int next(IRandomSource random) {
+        if (!hasNext()) {
+            throw new IllegalStateException(
+                    String.format("IndexSampler.next: all %d indices have been drawn", size));
+        }
+
+        // swap a random remaining position with the first remaining position
+        int position = drawn + random.nextInt(size - drawn);
+        int index = get(position);
+        set(position, get(drawn));
+        drawn++;
+        return index;
+    }// next
+
+    private int get(int position) {
+        if (size <= DENSE_LIMIT) {
+            return denseStamps[position] == generation ? dense[position] : position;
+        }
+        int slot = slot(keys, stamps, position);
+        return stamps[slot] == generation ? values[slot] : position;
+    }
+
+    private void set(int position, int index) {
+        if (size <= DENSE_LIMIT) {
+            dense[position] = index;
+            denseStamps[position] = generation;
+            return;
+        }
+        int slot = slot(keys, stamps, position);
+        if (stamps[slot] != generation) {
+            stamps[slot] = generation;
+            keys[slot] = position;
+            entries++;
+        }
+        values[slot] = index;
+
+        // keep the table at most half full, so probes stay short
+        if (entries * 2 > keys.length) {
+            grow();
+        }
+    }// set
+
+    /**
+     * finds the slot of a position in the hash table, or the empty slot where it
+     * belongs.
+     */
+    private int slot(int[] keys, int[] stamps, int position) {
+        int mask = keys.length - 1;
+        int slot = mix(position) & mask;
+        while (stamps[slot] == generation && keys[slot] != position) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }// slot
+
+    private static int mix(int position) {
+        int hash = position * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * doubles the hash table, keeping the slots of the current selection.
+     */
+    private void grow() {
+        int[] grownKeys = new int[keys.length * 2];
+        int[] grownValues = new int[grownKeys.length];
+        int[] grownStamps = new int[grownKeys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            if (stamps[i] == generation) {
+                int slot = slot(grownKeys, grownStamps, keys[i]);
+                grownKeys[slot] = keys[i];
+                grownValues[slot] = values[i];
+                grownStamps[slot] = generation;
+            }
+        }
+        keys = grownKeys;
+        values = grownValues;
+        stamps = grownStamps;
+    }// grow
+
+}// class
@@ -0,0 +1,81 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A selection strategy that selects positions of the list rather than items,
+ * so it can select from arrays without any boxed lists.
+ * 
+ * A selection is made in two steps: first the number of items is decided, then
+ * that many positions are filled in.
+ */
+abstract class IndexSelectionStrategy<T> implements ISelectionStrategy<T> {
+
+    /**
+     * decides how many items to select from a list of the given size.
+     * 
+     * @param size   the size of the list
+     * @param random the random source to draw from
+     * @return the number of items to select, at most {@link #maxSelections(int)}.
+     */
+    abstract int count(int size, IRandomSource random);
+
+    /**
+     * selects the given number of positions of a list of the given size.
+     * 
+     * @param size   the size of the list
+     * @param count  the number of positions to select
+     * @param random the random source to draw from
+     * @param out    the array to write the positions to, from the start
+     */
+    abstract void fill(int size, int count, IRandomSource random, int[] out);
+
+    @Override
+    public List<T> select(List<T> list, IRandomSource random) {
+        int count = count(list.size(), random);
+        int[] indices = new int[count];
+        fill(list.size(), count, random, indices);
+
+        List<T> selected = new ArrayList<T>(count);
+        for (int index : indices) {
+            selected.add(list.get(index));
+        }
+        return selected;
+    }// select
+
+    @Override
+    public int selectIndices(int size, IRandomSource random, int[] out) {
+        int count = count(size, random);
+        fill(size, count, random, out);
+        return count;
+    }// selectIndices
+
+    /**
+     * fills the array with distinct positions, drawn without replacement.
+     */
+    static void fillWithoutReplacement(int size, int count, IRandomSource random, int[] out) {
+        if (count > 0) {
+            IndexSampler sampler = IndexSampler.forSize(size);
+            for (int i = 0; i < count; i++) {
+                out[i] = sampler.next(random);
+            }
+        }
+    }// fillWithoutReplacement
+
+}// class
@@ -0,0 +1,115 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.List;
+
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources.Reseedable;
+
+/**
+ * A selection strategy that selects with its own kind of random source, rather
+ * than with the source it is called with.
+ * 
+ * Each thread keeps one generator of the strategy's kind, and reseeds it for
+ * every selection with a number drawn from the calling source, mixed with a
+ * salt. So artifacts built from the same seed make the same selections, and no
+ * source is created per selection. A source that cannot be reseeded is seeded
+ * anew for every selection instead.
+ * 
+ * The thread local source cannot be seeded, so a strategy of that kind draws
+ * from it directly, and is not reproducible. A stratified source is used as it
+ * is, so quota categories are still dealt from their decks.
+ */
+final class OwnSourceStrategy<T> implements ISelectionStrategy<T> {
+
+    private final ISelectionStrategy<T> strategy;
+    private final IRandomSource source;
+    private final long salt;
+
+    // each thread's generator of the source's kind, or null if it cannot be reseeded
+    private final ThreadLocal<Reseedable> generators;
+
+    /**
+     * creates a strategy that selects with its own source.
+     * 
+     * @param strategy the strategy to wrap
+     * @param source   the kind of source to select with. The salt is drawn from
+     *                 it, once.
+     */
+    OwnSourceStrategy(ISelectionStrategy<T> strategy, IRandomSource source) {
+        this(strategy, source, source.nextLong(),
+                RandomSources.reseedable(source) != null
+                        ? ThreadLocal.withInitial(() -> RandomSources.reseedable(source))
+                        : null);
+    }// constructor
+
+    private OwnSourceStrategy(ISelectionStrategy<T> strategy, IRandomSource source, long salt,
+            ThreadLocal<Reseedable> generators) {
+        this.strategy = strategy;
+        this.source = source;
+        this.salt = salt;
+        this.generators = generators;
+    }// constructor
+
+    @Override
+    public List<T> select(List<T> list, IRandomSource random) {
+        return strategy.select(list, sourceFor(random));
+    }// select
+
+    @Override
+    public int maxSelections(int size) {
+        return strategy.maxSelections(size);
+    }// maxSelections
+
+    @Override
+    public int selectIndices(int size, IRandomSource random, int[] out) {
+        return strategy.selectIndices(size, sourceFor(random), out);
+    }// selectIndices
+
+    @Override
+    public boolean isConstant(int size) {
+        return strategy.isConstant(size);
+    }// isConstant
+
+    @Override
+    public ISelectionStrategy<T> restrictedTo(int size, int[] allowed, int count) {
+        ISelectionStrategy<T> restricted = strategy.restrictedTo(size, allowed, count);
+        return restricted == strategy ? this : new OwnSourceStrategy<T>(restricted, source, salt, generators);
+    }// restrictedTo
+
+    /**
+     * returns the source to make one selection with.
+     * 
+     * @param random the source the strategy was called with
+     * @return the source to select with.
+     */
+    private IRandomSource sourceFor(IRandomSource random) {
+        if (random.isStratified()) {
+            return random;
+        } else if (source == RandomSources.threadLocal()) {
+            return source;
+        }
+
+        long seed = random.nextLong() ^ salt;
+        if (generators == null) {
+            return source.withSeed(seed);
+        }
+        Reseedable generator = generators.get();
+        generator.reseed(seed);
+        return generator;
+    }// sourceFor
+
+}// class
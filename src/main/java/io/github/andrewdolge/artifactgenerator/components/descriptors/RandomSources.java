@@ -0,0 +1,376 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Static utility class that contains implementations of the interface
+ * IRandomSource.
+ * 
+ * {@link io.github.andrewdolge.artifactgenerator.components.descriptors.IRandomSource}
+ * 
+ */
+public final class RandomSources {
+
+    private static final IRandomSource THREAD_LOCAL = new ThreadLocalSource();
+
+    // the increment of the SplitMix64 generator
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private RandomSources() {
+    }
+
+    /**
+     * returns a source backed by {@link java.util.concurrent.ThreadLocalRandom}.
+     * Every thread draws from its own generator, so the same source can be shared
+     * by any number of threads. It cannot be seeded: splitting it returns the same
+     * source, and seeding it returns a splittable source.
+     * 
+     * This is the default source.
+     * 
+     * @return the thread local source.
+     */
+    public static IRandomSource threadLocal() {
+        return THREAD_LOCAL;
+    }// threadLocal
+
+    /**
+     * returns a source backed by {@link java.util.SplittableRandom}, seeded with
+     * the given seed.
+     * 
+     * @param seed the seed
+     * @return a new splittable source.
+     */
+    public static IRandomSource splittable(long seed) {
+        return new SplittableSource(new SplittableRandom(seed));
+    }// splittable
+
+    /**
+     * returns a source backed by {@link java.util.SplittableRandom}, with a random
+     * seed.
+     * 
+     * @return a new splittable source.
+     */
+    public static IRandomSource splittable() {
+        return splittable(ThreadLocalRandom.current().nextLong());
+    }// splittable
+
+    /**
+     * returns a xoshiro256** source, seeded with the given seed. Xoshiro256** is a
+     * small, fast generator with 256 bits of state.
+     * 
+     * @param seed the seed
+     * @return a new xoshiro256** source.
+     */
+    public static IRandomSource xoshiro(long seed) {
+        return new XoshiroSource(seed);
+    }// xoshiro
+
+    /**
+     * returns a xoshiro256** source, with a random seed.
+     * 
+     * @return a new xoshiro256** source.
+     */
+    public static IRandomSource xoshiro() {
+        return xoshiro(ThreadLocalRandom.current().nextLong());
+    }// xoshiro
+
+    /**
+     * returns a source by name, as used in json files.
+     * 
+     * @param name the name of the source: "threadLocal", "splittable" or
+     *             "xoshiro".
+     * @param seed the seed of the source, or null for a random seed. Ignored by
+     *             "threadLocal".
+     * @return a new source.
+     * @throws IllegalArgumentException if the name is not a known source.
+     */
+    public static IRandomSource byName(String name, Long seed) {
+        if ("threadLocal".equals(name)) {
+            return threadLocal();
+        } else if ("splittable".equals(name)) {
+            return seed != null ? splittable(seed) : splittable();
+        } else if ("xoshiro".equals(name)) {
+            return seed != null ? xoshiro(seed) : xoshiro();
+        } else {
+            throw new IllegalArgumentException(String.format("RandomSources.byName: unknown random source '%s'", name));
+        }
+    }// byName
+
+    /**
+     * returns a thread local that gives each thread its own source, split from the
+     * given root source. Splitting the root is synchronized, but each thread only
+     * does it once.
+     * 
+     * @param root the source to split from
+     * @return a thread local of split sources.
+     */
+    public static ThreadLocal<IRandomSource> perThread(IRandomSource root) {
+        if (root == null) {
+            throw new IllegalArgumentException("RandomSources.perThread: root is null");
+        }
+        return ThreadLocal.withInitial(() -> {
+            synchronized (root) {
+                return root.split();
+            }
+        });
+    }// perThread
+
+    /**
+     * returns a new generator of the same kind as the given source whose seed can
+     * be reset in place, so a selection strategy can reseed one generator per
+     * thread instead of creating a source for every selection.
+     * 
+     * @param kind the source whose kind to use
+     * @return the generator, or null if the kind of source cannot be reseeded.
+     */
+    static Reseedable reseedable(IRandomSource kind) {
+        if (kind instanceof XoshiroSource) {
+            return new XoshiroSource(0L);
+        } else if (kind instanceof SplittableSource) {
+            return new SplitMixSource(0L);
+        }
+        return null;
+    }// reseedable
+
+    /**
+     * A random source whose seed can be reset in place.
+     */
+    interface Reseedable extends IRandomSource {
+
+        /**
+         * resets this source, so that it gives the same numbers as a new source of
+         * the same kind made with the given seed.
+         * 
+         * @param seed the seed
+         */
+        void reseed(long seed);
+    }// inner interface
+
+    /**
+     * checks that the bound of nextInt is positive.
+     */
+    private static void checkBound(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("IRandomSource.nextInt: bound(%d) must be positive", bound));
+        }
+    }
+
+    /**
+     * returns a random integer in [0, bound) from the source's random longs, by
+     * rejection sampling on 31 random bits, as java.util.Random does, so every
+     * value is equally likely.
+     */
+    private static int boundedInt(IRandomSource source, int bound) {
+        checkBound(bound);
+        int bits;
+        int value;
+        do {
+            bits = (int) (source.nextLong() >>> 33);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }// boundedInt
+
+    /**
+     * the SplitMix64 mixing function.
+     */
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A source backed by ThreadLocalRandom.
+     */
+    private static class ThreadLocalSource implements IRandomSource {
+
+        @Override
+        public int nextInt(int bound) {
+            checkBound(bound);
+            return ThreadLocalRandom.current().nextInt(bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+
+        @Override
+        public long nextLong() {
+            return ThreadLocalRandom.current().nextLong();
+        }
+
+        @Override
+        public IRandomSource split() {
+            // every thread already has its own generator
+            return this;
+        }
+
+        @Override
+        public IRandomSource withSeed(long seed) {
+            return splittable(seed);
+        }
+    }// inner class
+
+    /**
+     * A source backed by SplittableRandom.
+     */
+    private static class SplittableSource implements IRandomSource {
+
+        private final SplittableRandom random;
+
+        private SplittableSource(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            checkBound(bound);
+            return random.nextInt(bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return random.nextDouble();
+        }
+
+        @Override
+        public long nextLong() {
+            return random.nextLong();
+        }
+
+        @Override
+        public IRandomSource split() {
+            return new SplittableSource(random.split());
+        }
+
+        @Override
+        public IRandomSource withSeed(long seed) {
+            return splittable(seed);
+        }
+    }// inner class
+
+    /**
+     * A xoshiro256** generator, as described by David Blackman and Sebastiano
+     * Vigna. The state is seeded from a single long with SplitMix64.
+     */
+    private static class XoshiroSource implements Reseedable {
+
+        private long s0;
+        private long s1;
+        private long s2;
+        private long s3;
+
+        private XoshiroSource(long seed) {
+            reseed(seed);
+        }
+
+        @Override
+        public void reseed(long seed) {
+            // expand the seed into 256 bits of state with SplitMix64
+            long x = seed;
+            s0 = splitMix(x += GOLDEN_GAMMA);
+            s1 = splitMix(x += GOLDEN_GAMMA);
+            s2 = splitMix(x += GOLDEN_GAMMA);
+            s3 = splitMix(x += GOLDEN_GAMMA);
+        }
+
+        @Override
+        public long nextLong() {
+            long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            long t = s1 << 17;
+
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+
+            return result;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return boundedInt(this, bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        @Override
+        public IRandomSource split() {
+            return new XoshiroSource(nextLong());
+        }
+
+        @Override
+        public IRandomSource withSeed(long seed) {
+            return xoshiro(seed);
+        }
+    }// inner class
+
+    /**
+     * The SplitMix64 generator that backs {@link java.util.SplittableRandom},
+     * whose seed can be reset in place. It gives the same random longs as a
+     * SplittableRandom made with the same seed.
+     */
+    private static class SplitMixSource implements Reseedable {
+
+        private long seed;
+
+        private SplitMixSource(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public void reseed(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long nextLong() {
+            return splitMix(seed += GOLDEN_GAMMA);
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return boundedInt(this, bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        @Override
+        public IRandomSource split() {
+            return new SplitMixSource(nextLong());
+        }
+
+        @Override
+        public IRandomSource withSeed(long seed) {
+            return new SplitMixSource(seed);
+        }
+    }// inner class
+
+}// class
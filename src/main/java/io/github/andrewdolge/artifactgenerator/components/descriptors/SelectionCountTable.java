@@ -0,0 +1,165 @@
+/**
+ *    Copyright 2020 Andrew Dolge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.andrewdolge.artifactgenerator.components.descriptors;
+
+import java.util.Arrays;
+
+/**
+ * The distribution of the number of items a probability based selection
+ * strategy selects, precomputed so that a count costs one random draw and a
+ * binary search.
+ * 
+ * The strategies select the minimum number of items, then select one more with
+ * the given probability, and each time they do, multiply the probability by the
+ * multiplier, until the maximum is reached or a draw fails. The chance of
+ * selecting exactly k items is therefore known ahead of time, and is stored here
+ * as a cumulative table.
+ * 
+ * Very long tables are cut short. A draw that falls past the end of a table
+ * continues one item at a time from there, as the strategies used to, so the
+ * counts always have exactly the same distribution.
+ * 
+ * Tables are immutable, and safe to share between threads.
+ */
+final class SelectionCountTable {
+
+    // the most counts a table stores
+    private static final int MAX_ENTRIES = 1 << 12;
+
+    private final int min;
+    private final int max;
+    private final double multiplier;
+
+    // cumulative[j] is the chance of selecting at most min + j items
+    private final double[] cumulative;
+
+    // the probability of selecting another item once past the end of the table
+    private final double tailProbability;
+
+    // the only count that can be drawn, or -1 if there is more than one
+    private final int fixedCount;
+
+    /**
+     * builds the count table of a selection strategy.
+     * 
+     * @param min         the minimum number of items to select
+     * @param max         the maximum number of items to select
+     * @param probability the probability of selecting another item, once the
+     *                    minimum has been selected
+     * @param multiplier  the multiplier applied to the probability after each
+     *                    additional selection
+     */
+    SelectionCountTable(int min, int max, double probability, double multiplier) {
+        this.min = min;
+        this.max = max;
+        this.multiplier = multiplier;
+
+        int length = (int) Math.min((long) max - min + 1, MAX_ENTRIES);
+        double[] table = new double[length];
+
+        // the chance of reaching the current count, and of going past it
+        double reached = 1.0;
+        double current = probability;
+        double total = 0.0;
+        int j = 0;
+
+        for (; j < length; j++) {
+            if (min + j == max || reached == 0.0) {
+                // every remaining count is at most this one
+                table[j] = 1.0;
+                j++;
+                break;
+            }
+
+            double next = Math.max(0.0, Math.min(1.0, current));
+            total += reached * (1.0 - next);
+            table[j] = total;
+
+            if (total >= 1.0) {
+                // the remaining counts are too unlikely to be drawn
+                j++;
+                break;
+            }
+
+            reached = reached * next;
+            current = current * multiplier;
+        } // for every count
+
+        this.cumulative = j < length ? Arrays.copyOf(table, j) : table;
+        this.tailProbability = current;
+
+        // the count is fixed if the first count that can be drawn has all the chance
+        int fixed = -1;
+        for (int k = 0; k < cumulative.length; k++) {
+            if (cumulative[k] > 0.0) {
+                fixed = cumulative[k] >= 1.0 ? min + k : -1;
+                break;
+            }
+        }
+        this.fixedCount = fixed;
+    }// constructor
+
+    /**
+     * returns the number of items selected, if it is always the same.
+     * 
+     * @param cap the most items that can be selected
+     * @return the number of items that is always selected, or -1 if the number is
+     *         random.
+     */
+    int fixedCount(int cap) {
+        return fixedCount < 0 ? -1 : Math.min(fixedCount, Math.min(max, cap));
+    }// fixedCount
+
+    /**
+     * draws a number of items to select.
+     * 
+     * @param random the random source to draw from
+     * @param cap    the most items that can be selected, such as the size of the
+     *               list when selecting without replacement
+     * @return the number of items to select, at least min (unless the cap is
+     *         lower) and at most max and cap.
+     */
+    int next(IRandomSource random, int cap) {
+        double draw = random.nextDouble();
+
+        // find the first count whose cumulative chance is greater than the draw
+        int low = 0;
+        int high = cumulative.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > draw) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        } // while searching
+
+        int limit = Math.min(max, cap);
+        if (low < cumulative.length) {
+            return Math.min(min + low, limit);
+        }
+
+        // past the end of the table: keep going one item at a time
+        int count = min + cumulative.length;
+        double current = tailProbability;
+        while (count < limit && current > random.nextDouble()) {
+            count++;
+            current = current * multiplier;
+        }
+        return Math.min(count, limit);
+    }// next
+
+}// class
@@ -15,7 +15,9 @@
  */
 package io.github.andrewdolge.artifactgenerator.components.filters;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import io.github.andrewdolge.artifactgenerator.Description;
@@ -38,7 +40,40 @@ public class DescriptionFilters {
      * @return a description filter that accepts only the given categories.
      */
     public static Predicate<Description> acceptOnly(List<String> categories) {
-        return (description) -> categories.contains(description.getCategory());
+        return new AcceptOnly(categories);
     }// acceptOnly
 
+    /**
+     * A description filter that accepts only the given categories.
+     * 
+     * Unlike a lambda, the ArtifactBuilder can see which categories this filter
+     * accepts, and use that to skip work the filter would throw away.
+     */
+    public static class AcceptOnly implements Predicate<Description> {
+
+        private final List<String> categories;
+
+        // the accepted categories, for checking each description in constant time
+        private final Set<String> accepted;
+
+        private AcceptOnly(List<String> categories) {
+            this.categories = List.copyOf(categories);
+            this.accepted = new HashSet<String>(categories);
+        }
+
+        @Override
+        public boolean test(Description description) {
+            return accepted.contains(description.getCategory());
+        }
+
+        /**
+         * returns the categories this filter accepts.
+         * 
+         * @return an unmodifiable list of the accepted categories.
+         */
+        public List<String> getCategories() {
+            return categories;
+        }
+    }// inner class
+
 }// interface
\ No newline at end of file
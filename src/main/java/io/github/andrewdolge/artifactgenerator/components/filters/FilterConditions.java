@@ -47,7 +47,37 @@ public class FilterConditions {
      * @return a Predicate<Artifact>
      */
     public static Predicate<Artifact> isCategoryPresent(String category) {
-        return (artifact) -> artifact.getCategories().contains(category);
+        return new CategoryPresent(category);
     }// isCategoryPresent
 
+    /**
+     * A filter condition that is true if the given category is present in the
+     * artifact.
+     * 
+     * Unlike a lambda, the ArtifactBuilder can see which category this condition
+     * checks, and use that to skip work the filter would throw away.
+     */
+    public static class CategoryPresent implements Predicate<Artifact> {
+
+        private final String category;
+
+        private CategoryPresent(String category) {
+            this.category = category;
+        }
+
+        @Override
+        public boolean test(Artifact artifact) {
+            return artifact.hasCategory(category);
+        }
+
+        /**
+         * returns the category this condition checks for.
+         * 
+         * @return the category.
+         */
+        public String getCategory() {
+            return category;
+        }
+    }// inner class
+
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import com.google.gson.stream.JsonToken;
 
 import io.github.andrewdolge.artifactgenerator.components.IArtifactComponentFactory;
 import io.github.andrewdolge.artifactgenerator.components.SerializedArtifactComponent;
+import io.github.andrewdolge.artifactgenerator.components.SerializedConstraint;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.CustomDescriptor.CustomDescriptorBuilder;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
 import io.github.andrewdolge.artifactgenerator.components.filters.ConditionalDescriptorFilter;
@@ -42,7 +43,21 @@ public class JsonArtifactComponentFactory implements IArtifactComponentFactory {
 
     private List<IConditonalFilter> filters;
 
+    private String sourceName;
+
     public JsonArtifactComponentFactory(InputStream... ins) {
+        this(null, ins);
+    }// constructor
+
+    /**
+     * Creates descriptors and filters from the given json streams.
+     * 
+     * @param sourceName the name of the source of the streams, such as a file name,
+     *                   used to report problems. May be null.
+     * @param ins        the json streams to read
+     */
+    public JsonArtifactComponentFactory(String sourceName, InputStream... ins) {
+        this.sourceName = sourceName;
 
         Gson gson = new GsonBuilder().create();
         this.descriptors = new LinkedList<IArtifactDescriptor>();
@@ -98,6 +113,21 @@ public class JsonArtifactComponentFactory implements IArtifactComponentFactory {
                 if (component.hasSelectionStrategy()) {
                     builder.withSelectionStrategy(component.getStrategyFromSelector());
                 }
+                // weights only apply to the independent data
+                if (component.hasWeights()) {
+                    builder.withIndependentSelectionStrategy(component.getWeightedStrategy());
+                }
+                // constraints are checked while selecting, instead of filtering afterwards
+                if (component.hasConstraints()) {
+                    for (SerializedConstraint constraint : component.getConstraints()) {
+                        if (constraint == null || !constraint.isValid()) {
+                            throw new IllegalArgumentException(String.format("JsonArtifactComponentFactory: "
+                                    + "category '%s' has a constraint without 'when' or 'exclude'",
+                                    component.getCategory()));
+                        }
+                        builder.withConstraint(constraint.getWhen(), constraint.getIs(), constraint.getExclude());
+                    }
+                }
 
                 // create the descriptor and add it to the list of descriptors.
                 this.descriptors.add(builder.build());
@@ -121,4 +151,9 @@ public class JsonArtifactComponentFactory implements IArtifactComponentFactory {
         return this.filters;
     }
 
+    @Override
+    public String getSourceName() {
+        return this.sourceName;
+    }
+
 }// class
\ No newline at end of file
@@ -30,6 +30,7 @@ import com.google.gson.GsonBuilder;
 import io.github.andrewdolge.artifactgenerator.Artifact;
 import io.github.andrewdolge.artifactgenerator.Artifact.ArtifactBuilder;
 import io.github.andrewdolge.artifactgenerator.ArtifactConsumer;
+import io.github.andrewdolge.artifactgenerator.ArtifactTemplate;
 import io.github.andrewdolge.artifactgenerator.components.IArtifactComponentFactory;
 import io.github.andrewdolge.artifactgenerator.components.SerializedArtifactComponent;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.CustomDescriptor.CustomDescriptorBuilder;
@@ -54,6 +55,10 @@ public class ArtifactGeneratorCLI implements Callable<Integer> {
     @Option(names = { "-n", "--number" }, description = "Specifies the number of artifacts to generate.")
     private int numberOfArtifacts = 1;
 
+    @Option(names = { "-t",
+            "--threads" }, description = "Specifies the number of threads used to generate artifacts.")
+    private int threads = 1;
+
     @Option(names = { "-m",
             "--markdown" }, description = "Tells the generator to create artifacts and output them as Markdown (.md) files in the given directory")
     private File markdownDirectory;
@@ -69,6 +74,16 @@ public class ArtifactGeneratorCLI implements Callable<Integer> {
     public Integer call() throws Exception {
 
         /*------------------------------------ Secure the Input configurations --------------------------------------------*/
+        if (threads < 1) {
+            System.out.format("The number of threads must be at least one! Threads given: %d", threads);
+            return -1;
+        } // if threads
+
+        if (numberOfArtifacts < 0) {
+            System.out.format("The number of artifacts can't be negative! Number given: %d", numberOfArtifacts);
+            return -1;
+        } // if numberOfArtifacts
+
         if (!descriptorDirectory.exists()) {
             System.out.println("The descriptor directory doesn't exist!");
             System.out.format("Creating a new descriptor directory at: %s", descriptorDirectory.getAbsolutePath());
@@ -124,7 +139,7 @@ public class ArtifactGeneratorCLI implements Callable<Integer> {
 
                 try (FileInputStream fin = new FileInputStream(f)) {
 
-                    IArtifactComponentFactory jsonFactory = new JsonArtifactComponentFactory(fin);
+                    IArtifactComponentFactory jsonFactory = new JsonArtifactComponentFactory(f.getName(), fin);
                     artifactBuilder.withComponentFactory(jsonFactory);
 
                 } catch (Exception e) {
@@ -152,9 +167,14 @@ public class ArtifactGeneratorCLI implements Callable<Integer> {
         /*------------------------------------------ Build the Artifact ----------------------------------------------------*/
         artifactBuilder.withArtifactConsumer(consumer);
 
-        for (int i = 0; i < numberOfArtifacts; i++) {
-            artifactBuilder.build().output();
+        // compile once, and let every thread build from the same template
+        ArtifactTemplate template = artifactBuilder.compile();
+
+        // warn about descriptors that can never be used
+        for (String problem : template.getDescriptorGraph().getProblems()) {
+            System.out.format("Warning: %s\n", problem);
         }
+        template.forEachBatch(numberOfArtifacts, threads, Artifact::output);
 
         return 0;
     }// call
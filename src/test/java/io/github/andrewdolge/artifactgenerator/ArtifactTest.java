@@ -19,19 +19,38 @@
 package io.github.andrewdolge.artifactgenerator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
 import io.github.andrewdolge.artifactgenerator.Artifact.ArtifactBuilder;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.CustomDescriptor.CustomDescriptorBuilder;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.IArtifactDescriptor;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.IRandomSource;
 import io.github.andrewdolge.artifactgenerator.components.descriptors.ISelectionStrategy;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources;
 import io.github.andrewdolge.artifactgenerator.components.filters.DescriptionFilters;
 import io.github.andrewdolge.artifactgenerator.components.filters.FilterConditions;
 
@@ -144,4 +163,858 @@ public class ArtifactTest {
 
     }
 
+    /**
+     * Creates a dependent descriptor whose only part is the name of its own
+     * category, for any part of its parent category.
+     */
+    private IArtifactDescriptor getChainDescriptor(String category, String parentCategory, String parentPart) {
+        return new CustomDescriptorBuilder().withCategory(category)
+                .withDependentData(parentCategory, Map.of(parentPart, List.of(category))).build();
+    }
+
+    @Test
+    public void testArtifactWithDependentChainAddedInReverse() {
+        ArtifactBuilder builder = new ArtifactBuilder();
+
+        // add a long chain of dependents before the independent root
+        for (int i = 50; i > 0; i--) {
+            builder.withDescriptor(getChainDescriptor("Link " + i, "Link " + (i - 1), "Link " + (i - 1)));
+        }
+        builder.withDescriptor(new CustomDescriptorBuilder().withCategory("Link 0").withIndependentData("Link 0").build());
+
+        Artifact a = builder.build();
+
+        assertEquals(51, a.getCategories().size());
+        assertEquals(List.of("Link 50"), a.getDescription("Link 50").getParts());
+    }
+
+    @Test
+    public void testArtifactWithCyclicDependents() {
+        ArtifactBuilder builder = new ArtifactBuilder();
+
+        builder.withDescriptor(getOriginDescriptor()).withDescriptor(getChainDescriptor("A", "B", "B"))
+                .withDescriptor(getChainDescriptor("B", "A", "A"));
+
+        Artifact a = builder.build();
+
+        assertEquals(List.of("Origin"), a.getCategories());
+
+        DescriptorGraph graph = builder.validate();
+        assertEquals(List.of(Set.of("A", "B")), graph.getCycles());
+        assertEquals(2, graph.getPrunedDescriptors().size());
+        assertEquals(1, graph.getExecutionPlan().size());
+    }
+
+    @Test
+    public void testCompiledTemplateIsIndependentOfBuilder() {
+        ArtifactBuilder builder = new ArtifactBuilder();
+        builder.withDescriptor(getOriginDescriptor());
+
+        ArtifactTemplate template = builder.compile();
+        assertSame("compile should be cached until the builder changes", template, builder.compile());
+
+        builder.withDescriptor(getValueDescriptor(8));
+
+        assertEquals(List.of("Origin"), template.build().getCategories());
+        assertEquals(2, builder.compile().build().getCategories().size());
+    }
+
+    @Test
+    public void testCompiledTemplateSharedAcrossThreads() throws Exception {
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getDependentDescriptor()).withDescriptor(getColorDescriptor(0.75, 0.75)).compile();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Artifact>> futures = new ArrayList<Future<Artifact>>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> template.build()));
+            }
+            for (Future<Artifact> future : futures) {
+                assertFalse(future.get().getDescription("Origin").isEmpty());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBuildBatch() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getDependentDescriptor());
+
+        List<Artifact> artifacts = builder.buildBatch(1001, 4);
+
+        assertEquals(1001, artifacts.size());
+        for (Artifact artifact : artifacts) {
+            assertFalse(artifact.getDescription("Origin").isEmpty());
+        }
+    }
+
+    @Test
+    public void testForEachBatchVisitsEveryArtifact() {
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getOriginDescriptor()).compile();
+        AtomicLong count = new AtomicLong();
+
+        template.forEachBatch(10_000, 3, artifact -> count.incrementAndGet());
+
+        assertEquals(10_000, count.get());
+    }
+
+    /**
+     * returns the parts of every description of every artifact.
+     */
+    private static List<List<List<String>>> getParts(List<Artifact> artifacts) {
+        return artifacts.stream().map(artifact -> artifact.getAllDescriptions().stream().map(Description::getParts)
+                .collect(Collectors.toList())).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSeededRandomSourceIsRepeatable() {
+        for (long seed = 0; seed < 3; seed++) {
+            List<Artifact> xoshiro = new ArtifactBuilder().withDescriptor(getColorDescriptor(0.75, 0.75))
+                    .withRandomSource(RandomSources.xoshiro(seed)).buildBatch(200, 4);
+            List<Artifact> again = new ArtifactBuilder().withDescriptor(getColorDescriptor(0.75, 0.75))
+                    .withRandomSource(RandomSources.xoshiro(seed)).buildBatch(200, 4);
+            assertEquals(getParts(xoshiro), getParts(again));
+
+            List<Artifact> splittable = new ArtifactBuilder().withDescriptor(getColorDescriptor(0.75, 0.75))
+                    .withRandomSource(RandomSources.splittable(seed)).buildBatch(200, 4);
+            again = new ArtifactBuilder().withDescriptor(getColorDescriptor(0.75, 0.75))
+                    .withRandomSource(RandomSources.splittable(seed)).buildBatch(200, 4);
+            assertEquals(getParts(splittable), getParts(again));
+        } // for every seed
+
+        IRandomSource random = RandomSources.xoshiro(7);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(6);
+            assertTrue(value >= 0 && value < 6);
+        }
+    }
+
+    @Test
+    public void testArtifactCanBeRebuiltFromItsSeed() throws Exception {
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getDependentDescriptor()).withDescriptor(getColorDescriptor(0.75, 0.75)).compile();
+
+        List<Artifact> built = template.buildBatch(100, 4);
+        List<Artifact> rebuilt = new ArrayList<Artifact>();
+        for (Artifact artifact : built) {
+            rebuilt.add(template.build(artifact.getSeed().getAsLong()));
+        }
+        assertEquals(getParts(built), getParts(rebuilt));
+
+        // a new template of the same descriptors builds the same artifact, as does
+        // an asynchronous build
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Artifact async = template.buildAsync(executor).get(10, TimeUnit.SECONDS);
+            Artifact again = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                    .withDescriptor(getDependentDescriptor()).withDescriptor(getColorDescriptor(0.75, 0.75))
+                    .build(async.getSeed().getAsLong());
+            assertEquals(getParts(List.of(async)), getParts(List.of(again)));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertFalse(built.get(0).reroll("Color").getSeed().isPresent());
+    }
+
+    @Test
+    public void testSelectionWithoutReplacementCountsRepeatedValues() {
+        ISelectionStrategy<String> strategy = ISelectionStrategy.customSelectionStrategy(3, 3, 0.0, 1.0, false);
+
+        List<String> selected = new ArrayList<String>(strategy.select(List.of("Red", "Red", "Blue")));
+        selected.sort(null);
+        assertEquals(List.of("Blue", "Red", "Red"), selected);
+
+        // drawing every item of a large list selects each position exactly once
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 10_000; i++) {
+            numbers.add(i);
+        }
+        ISelectionStrategy<Integer> everything = ISelectionStrategy.customSelectionStrategy(10_000, 10_000, 0.0, 1.0,
+                false);
+        List<Integer> drawn = new ArrayList<Integer>(everything.select(numbers, RandomSources.xoshiro(1)));
+        drawn.sort(null);
+        assertEquals(numbers, drawn);
+    }
+
+    @Test
+    public void testSelectionCountsStayWithinBounds() {
+        ISelectionStrategy<String> strategy = ISelectionStrategy.customSelectionStrategy(2, 5, 0.5, 1.5, true);
+        List<String> colors = List.of("Blue", "Red", "Green");
+        IRandomSource random = RandomSources.xoshiro(11);
+        boolean[] seen = new boolean[6];
+
+        for (int i = 0; i < 1000; i++) {
+            int count = strategy.select(colors, random).size();
+            assertTrue(count >= 2 && count <= 5);
+            seen[count] = true;
+        }
+
+        // the probability of going past 4 items exceeds one, so 4 is never the count
+        assertTrue(seen[2] && seen[3] && seen[5]);
+        assertFalse(seen[4]);
+    }
+
+    @Test
+    public void testSelectionByIndexAndByItem() {
+        ISelectionStrategy<String> all = ISelectionStrategy.all();
+        int[] indices = new int[all.maxSelections(3)];
+        assertEquals(3, all.selectIndices(3, RandomSources.threadLocal(), indices));
+        assertEquals(List.of(0, 1, 2), Arrays.stream(indices).boxed().collect(Collectors.toList()));
+
+        // a strategy that can only select items is given the data as a list
+        IArtifactDescriptor descriptor = new CustomDescriptorBuilder().withCategory("Color")
+                .withIndependentData("Blue", "Red").withSelectionStrategy((list, random) -> list.subList(1, 2))
+                .build();
+        assertEquals(List.of("Red"), descriptor.getDescription().getParts());
+
+        descriptor = new CustomDescriptorBuilder().withCategory("Color").withIndependentData("Blue", "Red")
+                .withSelectionStrategy(ISelectionStrategy.all()).build();
+        assertEquals(List.of("Blue", "Red"), descriptor.getDescription().getParts());
+    }
+
+    @Test
+    public void testQuotaCoversEveryValueEvenly() {
+        List<Artifact> artifacts = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getDependentDescriptor()).withQuota("Origin", "Quality").buildBatch(800, 4);
+
+        Map<String, Integer> origins = new HashMap<String, Integer>();
+        Map<String, Integer> qualities = new HashMap<String, Integer>();
+        for (Artifact artifact : artifacts) {
+            String origin = artifact.getDescription("Origin").getParts().get(0);
+            origins.merge(origin, 1, Integer::sum);
+            if (origin.equals("Level 1")) {
+                qualities.merge(artifact.getDescription("Quality").getParts().get(0), 1, Integer::sum);
+            }
+            assertFalse(artifact.getSeed().isPresent());
+        }
+
+        // every level is dealt 100 times, and each bucket of Level 1 is dealt 10 times
+        assertEquals(8, origins.size());
+        assertTrue(origins.values().stream().allMatch(count -> count == 100));
+        assertEquals(Map.of("Very Poor", 30, "Poor", 40, "Average", 30), qualities);
+    }
+
+    @Test
+    public void testQuotaWithAnonymousDescriptor() {
+        IArtifactDescriptor note = () -> new Description("Note", List.of("Unlisted"));
+        List<Artifact> artifacts = new ArtifactBuilder().withDescriptor(getOriginDescriptor()).withDescriptor(note)
+                .withQuota("Origin").buildBatch(80, 1);
+
+        Map<String, Integer> origins = new HashMap<String, Integer>();
+        for (Artifact artifact : artifacts) {
+            origins.merge(artifact.getDescription("Origin").getParts().get(0), 1, Integer::sum);
+            assertEquals(List.of("Unlisted"), artifact.getDescription("Note").getParts());
+        }
+        assertTrue(origins.values().stream().allMatch(count -> count == 10));
+    }
+
+    @Test
+    public void testRepeatedQuotaAndProjectionCategories() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getValueDescriptor(8)).withQuota("Origin", "Origin").withProjection("Origin", "Origin");
+
+        Artifact artifact = builder.build();
+        assertFalse(artifact.getDescription("Origin").isEmpty());
+        assertTrue(artifact.getDescription("Value").isEmpty());
+    }
+
+    @Test
+    public void testRerollsDoNotCountTowardQuota() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor()).withQuota("Origin");
+
+        Map<String, Integer> origins = new HashMap<String, Integer>();
+        for (int i = 0; i < 80; i++) {
+            Artifact artifact = builder.build();
+            origins.merge(artifact.getDescription("Origin").getParts().get(0), 1, Integer::sum);
+            for (int j = 0; j < i % 3; j++) {
+                artifact.reroll("Origin");
+            }
+        }
+
+        assertEquals(8, origins.size());
+        assertTrue(origins.values().stream().allMatch(count -> count == 10));
+    }
+
+    @Test
+    public void testStrategyWithOwnSourceReseedsItsGenerator() {
+        AtomicLong seeded = new AtomicLong();
+        IRandomSource root = RandomSources.splittable(9);
+        // counts the sources made from the calling source
+        IRandomSource caller = new IRandomSource() {
+            @Override
+            public int nextInt(int bound) {
+                return root.nextInt(bound);
+            }
+
+            @Override
+            public double nextDouble() {
+                return root.nextDouble();
+            }
+
+            @Override
+            public long nextLong() {
+                return root.nextLong();
+            }
+
+            @Override
+            public IRandomSource split() {
+                return this;
+            }
+
+            @Override
+            public IRandomSource withSeed(long seed) {
+                seeded.incrementAndGet();
+                return RandomSources.splittable(seed);
+            }
+        };
+
+        List<Integer> list = List.of(0, 1, 2, 3, 4, 5, 6, 7);
+        for (IRandomSource kind : List.of(RandomSources.xoshiro(4), RandomSources.splittable(4))) {
+            ISelectionStrategy<Integer> strategy = ISelectionStrategy.withRandomSource(
+                    ISelectionStrategy.customSelectionStrategy(3, 3, 1.0, 1.0, false), kind);
+
+            for (int i = 0; i < 20; i++) {
+                long seed = caller.nextLong();
+                // the same calling stream gives the same selection
+                assertEquals(strategy.select(list, RandomSources.splittable(seed)),
+                        strategy.select(list, RandomSources.splittable(seed)));
+                assertEquals(3, strategy.select(list, caller).size());
+            }
+        }
+        assertEquals(0, seeded.get());
+    }
+
+    @Test
+    public void testDescriptionsAreComparedByValue() {
+        Description selected = new Description("Color", new String[] { "Blue", "Red", "Green" }, new int[] { 2, 0 });
+        Description listed = new Description("Color", List.of("Green", "Blue"));
+
+        assertEquals(listed, selected);
+        assertEquals(listed.hashCode(), selected.hashCode());
+        assertFalse(listed.equals(new Description("Hue", List.of("Green", "Blue"))));
+        assertSame(selected.getParts(), selected.getParts());
+
+        List<String> visited = new ArrayList<String>();
+        selected.forEachPart(visited::add);
+        assertEquals(List.of("Green", "Blue"), visited);
+        assertEquals("Blue", selected.getPart(1));
+    }
+
+    @Test
+    public void testSelectedDescriptionKeepsNoArrays() {
+        String[] data = { "Blue", "Red", "Green" };
+        int[] indices = { 2, 0 };
+        Description selected = new Description("Color", data, indices);
+        data[2] = "Yellow";
+        indices[0] = 1;
+        assertEquals(List.of("Green", "Blue"), selected.getParts());
+
+        assertEquals(List.of("Red"), new Description("Color", data, new int[] { 1, 2 }, 1).getParts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectedDescriptionRejectsOutOfBoundsIndex() {
+        new Description("Color", new String[] { "Blue" }, new int[] { 1 });
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDescriptionPartsAreReadOnly() {
+        new Description("Color", List.of("Blue")).getParts().add("Red");
+    }
+
+    @Test
+    public void testArtifactsAreEncodedWithTheTemplateDictionary() {
+        // the note's category and parts are not known to the template, so they are
+        // kept with the artifact
+        IArtifactDescriptor noteDescriptor = () -> new Description("Note", List.of("Unlisted", "Unlisted"));
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getDependentDescriptor()).withDescriptor(noteDescriptor).compile();
+
+        Artifact artifact = template.build(42L);
+        assertEquals(artifact, template.build(42L));
+        assertEquals(artifact.hashCode(), template.build(42L).hashCode());
+        assertEquals(List.of("Unlisted", "Unlisted"), artifact.getDescription("Note").getParts());
+        assertTrue(artifact.getCategories().containsAll(List.of("Origin", "Note")));
+
+        Artifact rerolled = artifact.reroll("Quality");
+        assertEquals(artifact.getDescription("Origin"), rerolled.getDescription("Origin"));
+        assertEquals(artifact.getDescription("Note"), rerolled.getDescription("Note"));
+    }
+
+    @Test
+    public void testOnlyFiltersOfPresentCategoriesApply() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getValueDescriptor(8));
+        for (int i = 0; i < 200; i++) {
+            builder.withFilter(FilterConditions.isCategoryPresent("Missing " + i),
+                    DescriptionFilters.acceptOnly(List.of("Missing " + i)));
+        }
+        builder.withFilter(FilterConditions.isCategoryPresent("Value"),
+                DescriptionFilters.acceptOnly(List.of("Value")));
+
+        Artifact artifact = builder.build();
+        assertEquals(List.of("Value"), artifact.getCategories());
+        assertTrue(artifact.hasCategory("Value"));
+        assertFalse(artifact.hasCategory("Origin"));
+    }
+
+    @Test
+    public void testDependentSelectionFromSeveralKeys() {
+        IArtifactDescriptor origins = new CustomDescriptorBuilder().withCategory("Origin")
+                .withIndependentData("Level 1", "Level 9", "Level 2")
+                .withSelectionStrategy(ISelectionStrategy.<String>all()).build();
+        IArtifactDescriptor qualities = new CustomDescriptorBuilder().withCategory("Quality")
+                .withDependentData("Origin", Map.of("Level 1", List.of("Poor", "Average"), "Level 2", List.of("Good")))
+                .withSelectionStrategy(ISelectionStrategy.<String>all()).build();
+
+        // the data of each key is selected from in order, and a key without data adds nothing
+        Artifact artifact = new ArtifactBuilder().withDescriptor(origins).withDescriptor(qualities).build();
+        assertEquals(List.of("Poor", "Average", "Good"), artifact.getDescription("Quality").getParts());
+
+        qualities = new CustomDescriptorBuilder().withCategory("Quality")
+                .withDependentData("Origin", Map.of("Level 1", List.of("Poor", "Average"), "Level 2", List.of("Good")))
+                .withSelectionStrategy(ISelectionStrategy.customSelectionStrategy(3, 3, 1.0, 1.0, false)).build();
+        artifact = new ArtifactBuilder().withDescriptor(origins).withDescriptor(qualities).build();
+        assertEquals(Set.of("Poor", "Average", "Good"), Set.copyOf(artifact.getDescription("Quality").getParts()));
+    }
+
+    @Test
+    public void testDependentDataWithManyKeys() {
+        Map<String, List<String>> data = new HashMap<String, List<String>>();
+        for (int i = 0; i < 10000; i++) {
+            data.put("Key " + i, List.of("Value " + i));
+        }
+        // "Aa" and "BB" have the same hash code
+        data.put("Aa", List.of("Value Aa"));
+        data.put("BB", List.of("Value BB"));
+        IArtifactDescriptor descriptor = new CustomDescriptorBuilder().withCategory("Value")
+                .withDependentData("Key", data).build();
+
+        for (String key : List.of("Key 0", "Key 9999", "Aa", "BB")) {
+            Description description = descriptor.getDescription(List.of(new Description("Key", List.of(key))));
+            assertEquals(List.of(data.get(key).get(0)), description.getParts());
+        }
+        assertTrue(descriptor.getDescription(List.of(new Description("Key", List.of("Key 10000")))).isEmpty());
+
+        descriptor = new CustomDescriptorBuilder().withCategory("Value").withDependentData("Key", data)
+                .withSelectionStrategy(ISelectionStrategy.<String>all()).build();
+        assertEquals(List.of("Value Aa", "Value 7"),
+                descriptor.getDescription(List.of(new Description("Key", List.of("Aa", "Missing", "Key 7"))))
+                        .getParts());
+    }
+
+    @Test
+    public void testSelectionWithoutReplacementDrawsDistinctPositions() {
+        IRandomSource random = RandomSources.splittable(3);
+        for (int size : new int[] { 1, 7, 256, 257, 5000 }) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = 0; i < size; i++) {
+                list.add(i);
+            }
+            ISelectionStrategy<Integer> strategy = ISelectionStrategy.customSelectionStrategy(size, size, 1.0, 1.0,
+                    false);
+            // every selection reuses the thread's sampler
+            for (int round = 0; round < 3; round++) {
+                assertEquals(Set.copyOf(list), Set.copyOf(strategy.select(list, random)));
+
+                int[] out = new int[size];
+                assertEquals(size, strategy.selectIndices(size, random, out));
+                assertEquals(size, Arrays.stream(out).distinct().count());
+            }
+        }
+    }
+
+    @Test
+    public void testConstrainedSelectionWithoutReplacementIsClamped() {
+        List<Description> flame = List.of(new Description("Type", List.of("Flame")));
+        IRandomSource random = RandomSources.splittable(5);
+        Map<String, List<String>> dependentData = new HashMap<String, List<String>>();
+        dependentData.put("Key", List.of("A", "B", "C", "D"));
+
+        // selects three without replacement, but the constraint leaves two
+        IArtifactDescriptor descriptor = new CustomDescriptorBuilder().withCategory("Letter")
+                .withIndependentData("A", "B", "C", "D").withDependentData("Origin", dependentData)
+                .withSelectionStrategy(ISelectionStrategy.customSelectionStrategy(3, 3, 1.0, 1.0, false))
+                .withConstraint("Type", List.of("Flame"), List.of("A", "B")).build();
+        List<Description> origin = List.of(new Description("Origin", List.of("Key")));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Set.of("C", "D"), Set.copyOf(descriptor.getDescription(null, flame, random).getParts()));
+            assertEquals(Set.of("C", "D"), Set.copyOf(descriptor.getDescription(origin, flame, random).getParts()));
+        }
+
+        // a constraint that excludes every candidate leaves an empty description
+        IArtifactDescriptor excluded = new CustomDescriptorBuilder().withCategory("Letter")
+                .withIndependentData("A", "B").withDependentData("Origin", dependentData)
+                .withSelectionStrategy(ISelectionStrategy.customSelectionStrategy(1, 1, 1.0, 1.0, false))
+                .withConstraint("Type", List.of("Flame"), List.of("A", "B", "C", "D")).build();
+        assertTrue(excluded.getDescription(null, flame, random).isEmpty());
+        assertEquals("Letter", excluded.getDescription(null, flame, random).getCategory());
+        assertTrue(excluded.getDescription(origin, flame, random).isEmpty());
+    }
+
+    @Test
+    public void testConstrainedSelectionKeepsWeights() {
+        IArtifactDescriptor descriptor = new CustomDescriptorBuilder().withCategory("Letter")
+                .withIndependentData("Common", "Rare", "Never", "Excluded")
+                .withIndependentSelectionStrategy(ISelectionStrategy
+                        .customWeightedSelectionStrategy(new double[] { 9.0, 1.0, 0.0, 50.0 }, 1, 1, 1.0, 1.0))
+                .withConstraint("Type", List.of("Flame"), List.of("Excluded")).build();
+
+        List<Description> flame = List.of(new Description("Type", List.of("Flame")));
+        IRandomSource random = RandomSources.splittable(9);
+        int common = 0;
+        int rare = 0;
+        for (int i = 0; i < 2000; i++) {
+            List<String> parts = descriptor.getDescription(null, flame, random).getParts();
+            assertEquals(1, parts.size());
+            assertFalse(parts.contains("Never"));
+            assertFalse(parts.contains("Excluded"));
+            common += parts.contains("Common") ? 1 : 0;
+            rare += parts.contains("Rare") ? 1 : 0;
+        }
+
+        assertTrue(common > 3 * rare);
+        assertTrue(rare > 0);
+    }
+
+    @Test
+    public void testAnonymousDescriptorProvidesDependentCategory() {
+        // reports no category, so it could provide any
+        IArtifactDescriptor origin = new IArtifactDescriptor() {
+            @Override
+            public Description getDescription() {
+                return new Description("Origin", List.of("Level 1"));
+            }
+        };
+
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(origin)
+                .withDescriptor(getChainDescriptor("Shade", "Origin", "Level 1"));
+        assertTrue(builder.validate().isValid());
+        assertEquals(2, builder.validate().getExecutionPlan().size());
+
+        Artifact artifact = builder.build();
+        assertEquals(List.of("Level 1"), artifact.getDescription("Origin").getParts());
+        assertFalse(artifact.getDescription("Shade").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildBatchRejectsZeroThreads() {
+        new ArtifactBuilder().withDescriptor(getOriginDescriptor()).buildBatch(10, 0);
+    }
+
+    @Test
+    public void testSizedStream() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor());
+
+        Spliterator<Artifact> spliterator = builder.stream(1000).spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        assertEquals(1000, spliterator.estimateSize());
+
+        assertEquals(1000, builder.stream(1000).parallel().filter(a -> !a.getDescription("Origin").isEmpty())
+                .count());
+    }
+
+    @Test
+    public void testSmallSizedStreamSplits() {
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor());
+
+        Spliterator<Artifact> spliterator = builder.stream(8).spliterator();
+        Spliterator<Artifact> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(4, prefix.estimateSize());
+        assertEquals(4, spliterator.estimateSize());
+
+        assertNull(builder.stream(1).spliterator().trySplit());
+        assertEquals(8, builder.stream(8).parallel().filter(a -> !a.getDescription("Origin").isEmpty()).count());
+    }
+
+    @Test
+    public void testUnboundedStreamIsLazy() {
+        AtomicLong built = new AtomicLong();
+        IArtifactDescriptor countingDescriptor = () -> new Description("Count",
+                List.of(String.valueOf(built.incrementAndGet())));
+
+        List<Artifact> artifacts = new ArtifactBuilder().withDescriptor(countingDescriptor).stream().limit(5)
+                .collect(Collectors.toList());
+
+        assertEquals(5, artifacts.size());
+        assertEquals(5, built.get());
+    }
+
+    /**
+     * A subscriber that requests one artifact at a time, up to a limit, and
+     * records what it received.
+     */
+    private static class LimitedSubscriber implements Flow.Subscriber<Artifact> {
+
+        private final int limit;
+        private Flow.Subscription subscription;
+        private final List<Artifact> received = new ArrayList<Artifact>();
+        private boolean completed;
+
+        private LimitedSubscriber(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Artifact item) {
+            received.add(item);
+            if (received.size() < limit) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void testPublisherOnlyBuildsRequestedArtifacts() {
+        AtomicLong built = new AtomicLong();
+        IArtifactDescriptor countingDescriptor = () -> new Description("Count",
+                List.of(String.valueOf(built.incrementAndGet())));
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(countingDescriptor).compile();
+
+        LimitedSubscriber slow = new LimitedSubscriber(3);
+        template.publisher(100, Runnable::run).subscribe(slow);
+
+        assertEquals(3, slow.received.size());
+        assertEquals(3, built.get());
+        assertFalse(slow.completed);
+
+        LimitedSubscriber greedy = new LimitedSubscriber(Integer.MAX_VALUE);
+        template.publisher(100, Runnable::run).subscribe(greedy);
+
+        assertEquals(100, greedy.received.size());
+        assertTrue(greedy.completed);
+    }
+
+    @Test
+    public void testPublisherSignalsErrorForZeroRequest() {
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getOriginDescriptor()).compile();
+        List<Throwable> errors = new ArrayList<Throwable>();
+
+        template.publisher(10, Runnable::run).subscribe(new Flow.Subscriber<Artifact>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(Artifact item) {
+                throw new AssertionError("no artifact was requested");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                throw new AssertionError("the publisher should not complete");
+            }
+        });
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testBuildAsyncRunsIndependentDescriptorsConcurrently() throws Exception {
+        // each descriptor waits for the other to start, so this only finishes if both
+        // run at the same time.
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Function<String, IArtifactDescriptor> waitingDescriptor = category -> () -> {
+            bothStarted.countDown();
+            try {
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Description(category, List.of(category));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Artifact a = new ArtifactBuilder().withDescriptor(waitingDescriptor.apply("A"))
+                    .withDescriptor(waitingDescriptor.apply("B")).withDescriptor(getOriginDescriptor())
+                    .withDescriptor(getDependentDescriptor()).buildAsync(executor).get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of("A"), a.getDescription("A").getParts());
+            assertEquals(List.of("B"), a.getDescription("B").getParts());
+            assertFalse(a.getDescription("Origin").isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRerollOnlyRegeneratesCategoryAndDependents() {
+        AtomicLong colors = new AtomicLong();
+        IArtifactDescriptor countingColor = new IArtifactDescriptor() {
+            @Override
+            public Description getDescription() {
+                return new Description("Color", List.of(String.valueOf(colors.incrementAndGet())));
+            }
+
+            @Override
+            public String getCategory() {
+                return "Color";
+            }
+        };
+
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(countingColor)
+                .withDescriptor(getOriginDescriptor())
+                .withDescriptor(getChainDescriptor("Shade", "Origin", "Level 1"));
+        Artifact original = builder.build();
+
+        for (int i = 0; i < 20; i++) {
+            Artifact rerolled = original.reroll("Origin");
+
+            assertEquals("Color should be reused", original.getDescription("Color").getParts(),
+                    rerolled.getDescription("Color").getParts());
+            // the dependent follows the rerolled origin
+            assertEquals(rerolled.getDescription("Origin").getParts().contains("Level 1"),
+                    !rerolled.getDescription("Shade").isEmpty());
+        }
+        assertEquals(1, colors.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRerollUnknownCategory() {
+        new ArtifactBuilder().withDescriptor(getOriginDescriptor()).build().reroll("Unknown");
+    }
+
+    @Test
+    public void testProjectionSkipsUnneededDescriptors() {
+        AtomicLong colors = new AtomicLong();
+        IArtifactDescriptor countingColor = () -> new Description("Color",
+                List.of(String.valueOf(colors.incrementAndGet())));
+
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getOriginDescriptor())
+                .withDescriptor(getChainDescriptor("Shade", "Origin", "Level 1"))
+                .withDescriptor(getValueDescriptor(8)).withProjection("Shade");
+
+        // descriptors that report no category are always kept
+        builder.withDescriptor(countingColor);
+
+        for (int i = 0; i < 20; i++) {
+            Artifact a = builder.build();
+            assertTrue(a.getDescription("Value").isEmpty());
+            assertFalse(a.getDescription("Origin").isEmpty());
+        }
+        assertEquals(20, colors.get());
+
+        assertFalse(builder.withProjection().build().getDescription("Value").isEmpty());
+    }
+
+    @Test
+    public void testExclusiveFilterSkipsRemovedDescriptors() throws Exception {
+        AtomicLong wasted = new AtomicLong();
+        IArtifactDescriptor countingWaste = new IArtifactDescriptor() {
+            @Override
+            public Description getDescription() {
+                wasted.incrementAndGet();
+                return new Description("Waste", List.of("Waste"));
+            }
+
+            @Override
+            public String getCategory() {
+                return "Waste";
+            }
+        };
+
+        ArtifactBuilder builder = new ArtifactBuilder().withDescriptor(getValueDescriptor(8))
+                .withDescriptor(getOriginDescriptor()).withDescriptor(countingWaste).withFilter(
+                        FilterConditions.isCategoryPresent("Value"),
+                        DescriptionFilters.acceptOnly(Arrays.asList("Value", "Origin")));
+
+        for (int i = 0; i < 20; i++) {
+            Artifact a = builder.build();
+            assertEquals(2, a.getCategories().size());
+            assertEquals(2, a.reroll("Value").getCategories().size());
+        }
+        assertEquals(0, wasted.get());
+
+        // an asynchronous build skips the same descriptors
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(2, builder.buildAsync(executor).get(10, TimeUnit.SECONDS).getCategories().size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, wasted.get());
+
+        // a filter the builder cannot see into turns the optimization off
+        builder.withFilter(FilterConditions.always(), description -> true);
+        assertEquals(2, builder.build().getCategories().size());
+        assertEquals(1, wasted.get());
+    }
+
+    @Test
+    public void testConstantDescriptorsAreEvaluatedOnce() {
+        AtomicLong evaluations = new AtomicLong();
+        IArtifactDescriptor constant = new IArtifactDescriptor() {
+            @Override
+            public Description getDescription() {
+                evaluations.incrementAndGet();
+                return new Description("Material", List.of("Iron"));
+            }
+
+            @Override
+            public boolean isConstant() {
+                return true;
+            }
+        };
+
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(constant).compile();
+        template.buildBatch(100, 2);
+        template.buildColumns(100);
+        assertEquals(List.of("Iron"), template.build().getDescription("Material").getParts());
+        assertEquals(1, evaluations.get());
+
+        assertTrue(new CustomDescriptorBuilder().withCategory("Color").withIndependentData("Blue", "Red")
+                .withSelectionStrategy(ISelectionStrategy.all()).build().isConstant());
+        assertTrue(getValueDescriptor(8).isConstant());
+        assertFalse(getOriginDescriptor().isConstant());
+    }
+
+    @Test
+    public void testColumnsMatchArtifactsBuiltFromTheirSeeds() {
+        ArtifactTemplate template = new ArtifactBuilder().withDescriptor(getDependentDescriptor())
+                .withDescriptor(getOriginDescriptor()).withDescriptor(getColorDescriptor(0.75, 0.75))
+                .withFilter(FilterConditions.isCategoryPresent("Quality"),
+                        DescriptionFilters.acceptOnly(Arrays.asList("Quality", "Origin")))
+                .compile();
+
+        List<Artifact> columns = template.buildColumns(2500);
+        assertEquals(2500, columns.size());
+
+        List<Artifact> rows = new ArrayList<Artifact>();
+        for (Artifact artifact : columns) {
+            rows.add(template.build(artifact.getSeed().getAsLong()));
+        }
+        assertEquals(getParts(rows), getParts(columns));
+    }
+
 }// test class
@@ -15,13 +15,21 @@
  */
 package io.github.andrewdolge.artifactgenerator;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 
 import io.github.andrewdolge.artifactgenerator.Artifact.ArtifactBuilder;
 import io.github.andrewdolge.artifactgenerator.components.IArtifactComponentFactory;
+import io.github.andrewdolge.artifactgenerator.components.descriptors.RandomSources;
 import io.github.andrewdolge.artifactgenerator.components.json.JsonArtifactComponentFactory;
 
 public class JsonArtifactTest {
@@ -115,6 +123,44 @@ public class JsonArtifactTest {
 
     }
 
+    @Test
+    public void testJsonArtifactWeighted() throws FileNotFoundException {
+        ArtifactBuilder artifactBuilder = new ArtifactBuilder();
+
+        IArtifactComponentFactory factory = new JsonArtifactComponentFactory(
+                new FileInputStream("src/test/resources/SerializedWeighted.json"));
+
+        int common = 0;
+        int rare = 0;
+        for (Artifact artifact : artifactBuilder.withComponentFactory(factory).buildBatch(2000, 1)) {
+            List<String> parts = artifact.getDescription("Weighted Category").getParts();
+            assertEquals(2, parts.size());
+            assertFalse(parts.contains("Result Never"));
+            common += parts.contains("Result Common") ? 1 : 0;
+            rare += parts.contains("Result Rare") ? 1 : 0;
+        }
+
+        assertTrue(common > rare);
+        assertTrue(rare > 0);
+    }
+
+    @Test
+    public void testJsonArtifactConstrained() throws FileNotFoundException {
+        IArtifactComponentFactory factory = new JsonArtifactComponentFactory(
+                new FileInputStream("src/test/resources/SerializedConstrained.json"));
+
+        // Material is listed first, but is generated after the Type that constrains it
+        int woodenFrost = 0;
+        for (Artifact artifact : new ArtifactBuilder().withComponentFactory(factory).buildBatch(500, 1)) {
+            String type = artifact.getDescription("Type").getParts().get(0);
+            String material = artifact.getDescription("Material").getParts().get(0);
+            assertFalse(type.equals("Flame") && material.equals("Wood"));
+            woodenFrost += type.equals("Frost") && material.equals("Wood") ? 1 : 0;
+        }
+
+        assertTrue(woodenFrost > 0);
+    }
+
     @Test
     public void testJsonDanglingDependent() throws FileNotFoundException {
 
@@ -131,4 +177,41 @@ public class JsonArtifactTest {
         actual.output();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testJsonDanglingDependentIsReported() throws FileNotFoundException {
+
+        DescriptorGraph graph = new ArtifactBuilder()
+                .withComponentFactory(new JsonArtifactComponentFactory("SerializedDependent.json",
+                        new FileInputStream("src/test/resources/SerializedDependent.json")))
+                .validate();
+
+        assertFalse(graph.isValid());
+        assertEquals(Set.of("Default"), graph.getUnresolvedCategories());
+        assertEquals(1, graph.getPrunedDescriptors().size());
+        assertTrue(graph.getProblems().get(0).startsWith("SerializedDependent.json"));
+        assertTrue(graph.getExecutionPlan().isEmpty());
+    }
+
+    @Test
+    public void testJsonSeededSelectorIsReproducible() throws FileNotFoundException {
+
+        ArtifactTemplate template = new ArtifactBuilder()
+                .withComponentFactory(new JsonArtifactComponentFactory(
+                        new FileInputStream("src/test/resources/SerializedSeededSelector.json")))
+                .compile();
+
+        for (long seed = 0; seed < 50; seed++) {
+            assertEquals(template.build(seed), template.build(seed));
+        } // for
+
+        List<List<Artifact>> batches = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            batches.add(new ArtifactBuilder()
+                    .withComponentFactory(new JsonArtifactComponentFactory(
+                            new FileInputStream("src/test/resources/SerializedSeededSelector.json")))
+                    .withRandomSource(RandomSources.splittable(5)).buildBatch(200, 4));
+        } // for
+        assertEquals(batches.get(0), batches.get(1));
+    }
+
+}